@@ -0,0 +1,113 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// DaySweep four blocks at a time with the Vector API, one lane per stream.
+// Kept out of src so the plugin builds without the incubating module, this source root is the optional ReapVector
+// module (see the README). Needs --add-modules jdk.incubator.vector to compile and run, DaySweep.create() only loads
+// it when the module is there and the class was built.
+final class VectorDaySweep extends DaySweep {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_256;
+    private static final LongVector STREAM_OFFSETS = LongVector.fromArray(SPECIES, new long[] { 0, 1, 2, 3 }, 0);
+
+    VectorDaySweep(long[] pwned_thresholds, long patch_threshold) {
+        super(pwned_thresholds, patch_threshold);
+    }
+
+    @Override
+    void step(long[] compromised, long[] in_scope, long[] state) {
+        LongVector s0 = LongVector.fromArray(SPECIES, state, 0);
+        LongVector s1 = LongVector.fromArray(SPECIES, state, STREAMS);
+        LongVector s2 = LongVector.fromArray(SPECIES, state, 2 * STREAMS);
+        LongVector s3 = LongVector.fromArray(SPECIES, state, 3 * STREAMS);
+        LongVector patch = LongVector.broadcast(SPECIES, patch_threshold);
+
+        for (int word = 0; word < compromised.length; word++) {
+            // Compromised blocks are in-scope, so nothing can change here, and no randoms are drawn
+            if (in_scope[word] == 0) {
+                continue;
+            }
+            // Lane j collects the misses of blocks first_block + j, + j + 4, ... as bit j, j + 4, ...
+            LongVector missed_attacks = LongVector.zero(SPECIES);
+            LongVector missed_patches = LongVector.zero(SPECIES);
+            int first_block = word << 6;
+            for (int lane = 0; lane < 64; lane += STREAMS) {
+                // xoshiro256++ on all four streams, written out twice to keep the state in registers
+                LongVector attack = rotate_left(s0.add(s3), 23).add(s0);
+                LongVector t = s1.lanewise(VectorOperators.LSHL, 17);
+                s2 = s2.lanewise(VectorOperators.XOR, s0);
+                s3 = s3.lanewise(VectorOperators.XOR, s1);
+                s1 = s1.lanewise(VectorOperators.XOR, s2);
+                s0 = s0.lanewise(VectorOperators.XOR, s3);
+                s2 = s2.lanewise(VectorOperators.XOR, t);
+                s3 = rotate_left(s3, 45);
+
+                LongVector patched = rotate_left(s0.add(s3), 23).add(s0);
+                t = s1.lanewise(VectorOperators.LSHL, 17);
+                s2 = s2.lanewise(VectorOperators.XOR, s0);
+                s3 = s3.lanewise(VectorOperators.XOR, s1);
+                s1 = s1.lanewise(VectorOperators.XOR, s2);
+                s0 = s0.lanewise(VectorOperators.XOR, s3);
+                s2 = s2.lanewise(VectorOperators.XOR, t);
+                s3 = rotate_left(s3, 45);
+
+                // (random >>> 1) <= threshold unless threshold - (random >>> 1) is negative, no mask needed
+                LongVector thresholds = LongVector.fromArray(SPECIES, pwned_thresholds, first_block + lane);
+                missed_attacks = missed_attacks.or(thresholds.sub(attack.lanewise(VectorOperators.LSHR, 1))
+                        .lanewise(VectorOperators.LSHR, 63).lanewise(VectorOperators.LSHL, lane));
+                missed_patches = missed_patches.or(patch.sub(patched.lanewise(VectorOperators.LSHR, 1))
+                        .lanewise(VectorOperators.LSHR, 63).lanewise(VectorOperators.LSHL, lane));
+            }
+            long attacks = ~missed_attacks.lanewise(VectorOperators.LSHL, STREAM_OFFSETS).reduceLanes(VectorOperators.OR);
+            long patches = ~missed_patches.lanewise(VectorOperators.LSHL, STREAM_OFFSETS).reduceLanes(VectorOperators.OR);
+            long targets = in_scope[word] & ~compromised[word];
+            compromised[word] = (compromised[word] | (attacks & targets)) & ~patches;
+        }
+
+        s0.intoArray(state, 0);
+        s1.intoArray(state, STREAMS);
+        s2.intoArray(state, 2 * STREAMS);
+        s3.intoArray(state, 3 * STREAMS);
+    }
+
+    private static LongVector rotate_left(LongVector x, int distance) {
+        return x.lanewise(VectorOperators.LSHL, distance).or(x.lanewise(VectorOperators.LSHR, 64 - distance));
+    }
+
+    @Override
+    boolean is_vectorized() {
+        return true;
+    }
+}
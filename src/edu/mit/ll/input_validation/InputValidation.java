@@ -29,6 +29,9 @@
 
 package edu.mit.ll.input_validation;
 
+import edu.mit.ll.simulation.MonteCarlo;
+import edu.mit.ll.simulation.ParameterSweep;
+
 import javax.swing.*;
 import java.io.IOException;
 import java.nio.file.FileSystems;
@@ -64,7 +67,7 @@ public class InputValidation {
         final String invalid_value_message = "Invalid value on " + key + ": " + value;
         final String unknown_key = "I am not expecting this key value: " + key + "! Why is it here?";
         switch (key) {
-            case "populate_blocks" -> {
+            case "populate_blocks", "parallel", "summary_only", "pre_screen", "incremental" -> {
                 if (!(value instanceof Boolean)) {
                     log(invalid_type_message, "Warning", "warn");
                     JOptionPane.showMessageDialog(null, invalid_type_message);
@@ -94,7 +97,24 @@ public class InputValidation {
                     }
                 }
             }
-            case "threat_likelihood", "patch_likelihood" -> {
+            case "engine" -> {
+                if (!(value instanceof String string_value)) {
+                    log(invalid_type_message, "Warning", "warn");
+                    JOptionPane.showMessageDialog(null, invalid_type_message);
+                    return false;
+                }
+                else if (string_value.equals(MonteCarlo.DAILY) || string_value.equals(MonteCarlo.EVENT)
+                        || string_value.equals(MonteCarlo.BIT_SLICED) || string_value.equals(MonteCarlo.VECTOR)
+                        || string_value.equals(MonteCarlo.EXACT) || string_value.equals(MonteCarlo.MATRIX)) {
+                    return true;
+                }
+                else {
+                    log(invalid_value_message, "Warning", "warn");
+                    JOptionPane.showMessageDialog(null, invalid_value_message);
+                    return false;
+                }
+            }
+            case "threat_likelihood", "patch_likelihood", "precision" -> {
                 if (!(value instanceof Double)) {
                     log(invalid_type_message, "Warning", "warn");
                     JOptionPane.showMessageDialog(null, invalid_type_message);
@@ -110,7 +130,21 @@ public class InputValidation {
                     }
                 }
             }
-            case "days", "simulations", "uniform_size", "backup_frequency", "rto", "rpo" -> {
+            case "importance_tilt" -> {
+                // A multiplier on every threat likelihood, 1 means plain Monte Carlo
+                if (!(value instanceof Double)) {
+                    log(invalid_type_message, "Warning", "warn");
+                    JOptionPane.showMessageDialog(null, invalid_type_message);
+                    return false;
+                } else if ((Double) value < 1) {
+                    log(invalid_value_message, "Warning", "warn");
+                    JOptionPane.showMessageDialog(null, invalid_value_message);
+                    return false;
+                } else {
+                    return true;
+                }
+            }
+            case "days", "simulations", "uniform_size", "backup_frequency", "rto", "rpo", "max_backup_frequency" -> {
                 if (!(value instanceof Integer)) {
                     log(invalid_type_message, "Warning", "warn");
                     JOptionPane.showMessageDialog(null, invalid_type_message);
@@ -126,6 +160,55 @@ public class InputValidation {
                     }
                 }
             }
+            case "compare_weights" -> {
+                // Comma separated blocks.json style files, each is compared against the current weights
+                if (!(value instanceof String string_value)) {
+                    log(invalid_type_message, "Warning", "warn");
+                    JOptionPane.showMessageDialog(null, invalid_type_message);
+                    return false;
+                }
+                for (String weights_file : string_value.split(",")) {
+                    if (weights_file.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        read_validating_json(weights_file.trim());
+                    }
+                    catch (IOException e) {
+                        log(invalid_value_message, "Warning", "warn");
+                        JOptionPane.showMessageDialog(null, invalid_value_message);
+                        return false;
+                    }
+                }
+                return true;
+            }
+            case "sweep" -> {
+                // e.g. "rto=5:30:5; patch_likelihood=0.3,0.5", see ParameterSweep.parse()
+                if (!(value instanceof String string_value)) {
+                    log(invalid_type_message, "Warning", "warn");
+                    JOptionPane.showMessageDialog(null, invalid_type_message);
+                    return false;
+                }
+                try {
+                    ParameterSweep.parse(string_value);
+                    return true;
+                }
+                catch (IllegalArgumentException e) {
+                    log(invalid_value_message + " " + e.getMessage(), "Warning", "warn");
+                    JOptionPane.showMessageDialog(null, invalid_value_message + "\n" + e.getMessage());
+                    return false;
+                }
+            }
+            case "seed" -> {
+                // Any whole number works as a seed, a negative seed means pick a new one every run
+                if (!(value instanceof Integer) && !(value instanceof Long)) {
+                    log(invalid_type_message, "Warning", "warn");
+                    JOptionPane.showMessageDialog(null, invalid_type_message);
+                    return false;
+                } else {
+                    return true;
+                }
+            }
             default -> {
                 log(unknown_key, "Warning", "warn");
                 JOptionPane.showMessageDialog(null, unknown_key);
@@ -29,15 +29,21 @@
 
 package edu.mit.ll.plots;
 
+import edu.mit.ll.simulation_results.DailyPercentileEnvelope;
+import edu.mit.ll.simulation_results.IntHistogram;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartUtils;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.NumberAxis;
 import org.jfree.chart.plot.PlotOrientation;
 import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.xy.DeviationRenderer;
 import org.jfree.data.xy.XYSeries;
 import org.jfree.data.xy.XYSeriesCollection;
+import org.jfree.data.xy.YIntervalSeries;
+import org.jfree.data.xy.YIntervalSeriesCollection;
 
+import java.awt.Color;
 import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
@@ -144,6 +150,62 @@ public class LineGraph {
         ChartUtils.saveChartAsPNG(new File(outputFileName), chart, 800, 600);
     }
 
+    // Fan chart of the per-day distribution over all simulations, for each count a P5-P95 and a P25-P75 band
+    // around the median, so the plot looks the same however many simulations were run
+    public static void createFanChart(DailyPercentileEnvelope envelope,
+                                      String title,
+                                      String xAxisLabel,
+                                      String yAxisLabel,
+                                      String outputFileName) throws IOException {
+        YIntervalSeriesCollection dataset = new YIntervalSeriesCollection();
+        String[] names = { "In-Scope Blocks", "Compromised Blocks" };
+        Color[] colors = { Color.BLUE, Color.RED };
+        DeviationRenderer renderer = new DeviationRenderer(true, false);
+        renderer.setAlpha(0.25f);
+        for (int metric = 0; metric < names.length; metric++) {
+            YIntervalSeries outer = new YIntervalSeries(names[metric] + " P5-P95");
+            YIntervalSeries inner = new YIntervalSeries(names[metric] + " P25-P75");
+            for (int day = 0; day < envelope.get_days(); day++) {
+                IntHistogram counts = metric == 0 ? envelope.get_in_scope_blocks(day)
+                        : envelope.get_compromised_blocks(day);
+                if (counts.count() == 0) {
+                    continue;
+                }
+                double median = counts.quantile(0.50);
+                // Day 1 corresponds to index 0
+                outer.add(day + 1, median, counts.quantile(0.05), counts.quantile(0.95));
+                inner.add(day + 1, median, counts.quantile(0.25), counts.quantile(0.75));
+            }
+            dataset.addSeries(outer);
+            dataset.addSeries(inner);
+            for (int series = 2 * metric; series < 2 * metric + 2; series++) {
+                renderer.setSeriesPaint(series, colors[metric]);
+                renderer.setSeriesFillPaint(series, colors[metric]);
+            }
+        }
+
+        JFreeChart chart = ChartFactory.createXYLineChart(
+                title,
+                xAxisLabel,
+                yAxisLabel,
+                dataset,
+                PlotOrientation.VERTICAL,
+                true,
+                true,
+                false
+        );
+
+        XYPlot plot = chart.getXYPlot();
+        plot.setRenderer(renderer);
+        NumberAxis xAxis = (NumberAxis) plot.getDomainAxis();
+        xAxis.setStandardTickUnits(NumberAxis.createIntegerTickUnits());
+
+        NumberAxis yAxis = (NumberAxis) plot.getRangeAxis();
+        yAxis.setStandardTickUnits(NumberAxis.createIntegerTickUnits());
+
+        ChartUtils.saveChartAsPNG(new File(outputFileName), chart, 800, 600);
+    }
+
     public static void main(String[] args) throws IOException {
         List<Integer> infectedPeople = List.of(10, 20, 30, 40, 50, 60, 70);
         createLineGraph(infectedPeople,
@@ -36,6 +36,8 @@ import org.jfree.chart.annotations.CategoryTextAnnotation;
 import org.jfree.chart.plot.CategoryPlot;
 import org.jfree.chart.renderer.category.BoxAndWhiskerRenderer;
 import org.jfree.chart.ui.TextAnchor;
+import edu.mit.ll.simulation_results.IntHistogram;
+import org.jfree.data.statistics.BoxAndWhiskerItem;
 import org.jfree.data.statistics.DefaultBoxAndWhiskerCategoryDataset;
 
 import java.awt.*;
@@ -123,7 +125,93 @@ public class Toukey {
 
         // I want the component to either be the block name or the simulation number
         dataset.add(data, block_name, block_name);
+        saveBoxAndWhiskerPlot(dataset, plot_title, x_axis, y_axis, output_file_name);
+    }
+
+    // Same plot, but from a histogram of the results, for when the results of each simulation were not kept
+    public static void createBoxAndWhiskerPlot(String block_name, IntHistogram data,
+                                               String plot_title,
+                                               String x_axis,
+                                               String y_axis,
+                                               String output_file_name) throws IOException {
+        DefaultBoxAndWhiskerCategoryDataset dataset = new DefaultBoxAndWhiskerCategoryDataset();
+        dataset.add(createBoxAndWhiskerItem(data), block_name, block_name);
+        saveBoxAndWhiskerPlot(dataset, plot_title, x_axis, y_axis, output_file_name);
+    }
+
+    // Follows the JFreeChart BoxAndWhiskerCalculator rules (median/Q1/Q3 and 1.5 IQR whiskers),
+    // except each outlier value is listed once instead of once per simulation
+    public static BoxAndWhiskerItem createBoxAndWhiskerItem(IntHistogram data) {
+        long count = data.count();
+        if (count == 0) {
+            return new BoxAndWhiskerItem(null, null, null, null, null, null, null, null, new ArrayList<Double>());
+        }
+
+        double median = histogramMedian(data, 0, count - 1);
+        double q1;
+        double q3;
+        if (count == 1) {
+            q1 = median;
+            q3 = median;
+        }
+        else if (count % 2 == 1) {
+            q1 = histogramMedian(data, 0, count / 2);
+            q3 = histogramMedian(data, count / 2, count - 1);
+        }
+        else {
+            q1 = histogramMedian(data, 0, count / 2 - 1);
+            q3 = histogramMedian(data, count / 2, count - 1);
+        }
+
+        double interQuartileRange = q3 - q1;
+        double upperOutlierThreshold = q3 + (interQuartileRange * 1.5);
+        double lowerOutlierThreshold = q1 - (interQuartileRange * 1.5);
+        double upperFaroutThreshold = q3 + (interQuartileRange * 2.0);
+        double lowerFaroutThreshold = q1 - (interQuartileRange * 2.0);
+
+        double minRegularValue = Double.POSITIVE_INFINITY;
+        double maxRegularValue = Double.NEGATIVE_INFINITY;
+        double minOutlier = Double.POSITIVE_INFINITY;
+        double maxOutlier = Double.NEGATIVE_INFINITY;
+        List<Double> outliers = new ArrayList<>();
+        for (int value = 0; value <= data.max_value(); value++) {
+            if (data.get_count(value) == 0) {
+                continue;
+            }
+            if (value > upperOutlierThreshold) {
+                outliers.add((double) value);
+                if (value > maxOutlier && value <= upperFaroutThreshold) {
+                    maxOutlier = value;
+                }
+            }
+            else if (value < lowerOutlierThreshold) {
+                outliers.add((double) value);
+                if (value < minOutlier && value >= lowerFaroutThreshold) {
+                    minOutlier = value;
+                }
+            }
+            else {
+                minRegularValue = Math.min(minRegularValue, value);
+                maxRegularValue = Math.max(maxRegularValue, value);
+            }
+            minOutlier = Math.min(minOutlier, minRegularValue);
+            maxOutlier = Math.max(maxOutlier, maxRegularValue);
+        }
+
+        return new BoxAndWhiskerItem(data.mean(), median, q1, q3,
+                minRegularValue, maxRegularValue, minOutlier, maxOutlier, outliers);
+    }
+
+    // Median of the sorted samples between ranks start and end, both inclusive
+    private static double histogramMedian(IntHistogram data, long start, long end) {
+        return data.median(start, end + 1);
+    }
 
+    private static void saveBoxAndWhiskerPlot(DefaultBoxAndWhiskerCategoryDataset dataset,
+                                              String plot_title,
+                                              String x_axis,
+                                              String y_axis,
+                                              String output_file_name) throws IOException {
 
         JFreeChart chart = ChartFactory.createBoxAndWhiskerChart(
                 plot_title, // This should change depending on metric plotted (e.g., number of days compromised)
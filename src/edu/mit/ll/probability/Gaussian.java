@@ -29,8 +29,6 @@
 
 package edu.mit.ll.probability;
 
-import java.security.SecureRandom;
-
 /******************************************************************************
  *  Compilation:  javac Gaussian.java
  *  Execution:    java Gaussian x mu sigma
@@ -55,8 +53,6 @@ import java.security.SecureRandom;
 
 public class Gaussian {
 
-    private static final SecureRandom random = new SecureRandom();
-
     // return pdf(x) = standard Gaussian pdf
     public static double pdf(double x) {
         return Math.exp(-x*x / 2) / Math.sqrt(2 * Math.PI);
@@ -99,11 +95,59 @@ public class Gaussian {
 
     // pdf; get the probability of X
     // cdf: get probability P(x <= X) -> value between 0 and 1
-    public static boolean eventOccurred(double probability, double mu, double sigma) {
+    // This is the reference sampler, it runs the Taylor series on every draw, use eventOccurred(probability, random)
+    public static boolean eventOccurred(double probability, double mu, double sigma, RandomSource random) {
         double randomValue = cdf(random.nextGaussian(mu, sigma), mu, sigma); // Generate a random Gaussian value
         return randomValue <= probability; // Check if the event occurs
     }
 
+    // cdf(X) of a Gaussian X is uniform on [0, 1] (probability integral transform),
+    // so one uniform draw and a compare gives the same event distribution as the sampler above for any mu and sigma
+    public static boolean eventOccurred(double probability, RandomSource random) {
+        return random.nextDouble() < probability;
+    }
+
+    // Threshold for RandomSource.nextEvent(), gives exactly the same event as eventOccurred(probability, random)
+    // random.nextDouble() < probability holds for the top 53 bits m < ceil(probability * 2^53)
+    public static long get_threshold(double probability) {
+        if (!(probability > 0)) {
+            return -1;
+        }
+        if (probability >= 1) {
+            return Long.MAX_VALUE;
+        }
+        long k = (long) Math.ceil(probability * 0x1p53);
+        return ((k - 1) << 10) | 0x3FF;
+    }
+
+    // Run both samplers on the same probabilities and compare the event rates with a two-proportion z-test
+    // Returns false if any probability differs by more than max_z standard errors
+    public static boolean checkEquivalence(double[] probabilities, int trials, double max_z, RandomSource random) {
+        boolean equivalent = true;
+        for (double probability : probabilities) {
+            int taylor_events = 0;
+            int closed_form_events = 0;
+            for (int i = 0; i < trials; i++) {
+                if (eventOccurred(probability, 0, 1, random)) {
+                    ++taylor_events;
+                }
+                if (eventOccurred(probability, random)) {
+                    ++closed_form_events;
+                }
+            }
+            double taylor_rate = (double) taylor_events / trials;
+            double closed_form_rate = (double) closed_form_events / trials;
+            double pooled = (double) (taylor_events + closed_form_events) / (2.0 * trials);
+            double standard_error = Math.sqrt(pooled * (1 - pooled) * 2.0 / trials);
+            double z = standard_error == 0 ? 0 : (closed_form_rate - taylor_rate) / standard_error;
+            boolean passed = Math.abs(z) <= max_z;
+            System.out.printf("p=%.4f taylor=%.5f closed_form=%.5f z=%+.3f %s%n",
+                    probability, taylor_rate, closed_form_rate, z, passed ? "OK" : "FAIL");
+            equivalent &= passed;
+        }
+        return equivalent;
+    }
+
     // return phi(x) = standard Gaussian pdf
     @Deprecated
     public static double phi(double x) {
@@ -135,7 +179,15 @@ public class Gaussian {
     }
 
     // test client
+    // % java Gaussian --equivalence [trials] to check eventOccurred against the Taylor series sampler
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--equivalence")) {
+            int trials = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+            double[] probabilities = { 0.0, 0.001, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 1.0 };
+            boolean equivalent = checkEquivalence(probabilities, trials, 4.0, RandomSource.create(RandomSource.XOSHIRO, 42));
+            System.out.println(equivalent ? "Samplers are equivalent" : "Samplers differ!");
+            System.exit(equivalent ? 0 : 1);
+        }
         double z     = Double.parseDouble(args[0]);
         double mu    = Double.parseDouble(args[1]);
         double sigma = Double.parseDouble(args[2]);
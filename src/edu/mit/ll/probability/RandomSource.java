@@ -0,0 +1,142 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.probability;
+
+import java.security.SecureRandom;
+import java.util.random.RandomGenerator;
+
+// Source of random numbers for the simulations.
+// Monte Carlo needs throughput and repeatability, not cryptographic strength, so every source here is seedable.
+// Each simulation should draw from its own stream, see forSimulation().
+public interface RandomSource extends RandomGenerator {
+
+    String XOSHIRO = "xoshiro256++";
+
+    // A new, statistically independent source, advancing this one
+    RandomSource split();
+
+    // One Bernoulli trial against a threshold from Uniform.get_threshold() or Gaussian.get_threshold()
+    // The event occurs with probability (threshold + 1) / 2^63, -1 never occurs, Long.MAX_VALUE always does
+    default boolean nextEvent(long threshold) {
+        return (nextLong() >>> 1) <= threshold;
+    }
+
+    // 64 trials at once, one per bit set in lanes, each with the same probability as nextEvent(threshold)
+    // Compares 64 uniform 63-bit numbers to the threshold one bit at a time from the top, a lane is decided
+    // at the first bit where it differs from the threshold, so only about log2(lanes) + 2 words are drawn
+    default long nextEventMask(long threshold, long lanes) {
+        if (threshold < 0 || lanes == 0) {
+            return 0;
+        }
+        if (threshold == Long.MAX_VALUE) {
+            return lanes;
+        }
+        long events = 0;
+        long undecided = lanes;
+        for (int bit = 62; bit >= 0 && undecided != 0; bit--) {
+            long random = nextLong();
+            if (((threshold >>> bit) & 1) != 0) {
+                events |= undecided & ~random;
+                undecided &= random;
+            }
+            else {
+                undecided &= ~random;
+            }
+        }
+        // Lanes equal to the threshold on every bit are events too, nextEvent() is inclusive
+        return events | undecided;
+    }
+
+    // The exact probability nextEvent(threshold) occurs with
+    static double eventProbability(long threshold) {
+        if (threshold < 0) {
+            return 0.0;
+        }
+        if (threshold == Long.MAX_VALUE) {
+            return 1.0;
+        }
+        return Math.scalb((double) (threshold + 1), -63);
+    }
+
+    // The threshold nextEvent() occurs with the given probability for, to within 2^-63
+    static long eventThreshold(double probability) {
+        if (!(probability > 0.0)) {
+            return -1;
+        }
+        if (probability >= 1.0) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, Math.round(Math.scalb(probability, 63)) - 1);
+    }
+
+    // Number of failed trials before the first success, each trial succeeding with the given probability
+    // Returns Integer.MAX_VALUE if the probability is 0 or the count does not fit in an int
+    default int nextGeometric(double probability) {
+        if (probability >= 1.0) {
+            return 0;
+        }
+        if (!(probability > 0.0)) {
+            return Integer.MAX_VALUE;
+        }
+        double failures = Math.floor(Math.log(1.0 - nextDouble()) / Math.log1p(-probability));
+        return failures < Integer.MAX_VALUE ? (int) failures : Integer.MAX_VALUE;
+    }
+
+    static RandomSource create(String algorithm, long seed) {
+        if (XOSHIRO.equals(algorithm)) {
+            return new Xoshiro256PlusPlus(seed);
+        }
+        throw new IllegalArgumentException("Unknown random source " + algorithm);
+    }
+
+    // The stream for a simulation only depends on the seed and the simulation number,
+    // so results are the same no matter which thread or in which order simulations are run
+    static RandomSource forSimulation(long seed, int simulation) {
+        return create(XOSHIRO, mix64(seed + (simulation + 1) * 0x9E3779B97F4A7C15L));
+    }
+
+    // Counter-based draw, the value at position 'counter' of the SplitMix64 sequence started at 'key'
+    // Any draw can be computed directly, so two runs can share the draw for e.g. the same (simulation, block, day)
+    static long splitMix64(long key, long counter) {
+        return mix64(key + (counter + 1) * 0x9E3779B97F4A7C15L);
+    }
+
+    // Used when no seed is provided, the run is then not reproducible
+    static long randomSeed() {
+        return new SecureRandom().nextLong();
+    }
+
+    // SplitMix64 finalizer, spreads close seeds (0, 1, 2, ...) to unrelated states
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
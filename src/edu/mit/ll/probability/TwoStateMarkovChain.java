@@ -0,0 +1,211 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.probability;
+
+import java.util.Arrays;
+
+// Exact per-block statistics of a block that is always in scope, e.g. a starting block.
+// Its state at the end of each day is a two-state Markov chain: a clean block ends the day compromised with
+// probability p * (1 - r), it is attacked with p and can be patched the same day with r, a compromised block
+// ends the day clean with probability r.
+// The distributions of the SimulationBlockSummary metrics are computed by dynamic programming over the days,
+// tracking the state and the metric so far, so no sampling is needed.
+// Probabilities below CUTOFF are dropped, which keeps the support of each distribution narrow.
+// The chance of being compromised can also change from day to day, e.g. with the chance of being in scope,
+// which makes the chain an approximation for blocks that aren't always in scope, see MeanFieldEstimator.
+public class TwoStateMarkovChain {
+
+    private static final double CUTOFF = 1e-300;
+
+    private final int days;
+    private final int backup_frequency;
+    // Probability a clean block ends a day compromised, for each day, and a compromised one ends it clean
+    private final double[] compromise;
+    private final double patch;
+
+    public TwoStateMarkovChain(int days, double attack_probability, double patch_probability, int backup_frequency) {
+        this(get_daily_compromise(days, attack_probability, patch_probability), patch_probability, backup_frequency);
+    }
+
+    // daily_compromise[day] is the probability a clean block ends 'day' compromised
+    public TwoStateMarkovChain(double[] daily_compromise, double patch_probability, int backup_frequency) {
+        this.days = daily_compromise.length;
+        this.backup_frequency = backup_frequency;
+        this.compromise = daily_compromise;
+        this.patch = patch_probability;
+    }
+
+    private static double[] get_daily_compromise(int days, double attack_probability, double patch_probability) {
+        double[] daily_compromise = new double[days];
+        Arrays.fill(daily_compromise, attack_probability * (1.0 - patch_probability));
+        return daily_compromise;
+    }
+
+    // P(days compromised = k) for k = 0..days
+    public double[] get_days_compromised_distribution() {
+        return solve(Metric.DAYS_COMPROMISED, days);
+    }
+
+    // P(times compromised = k), a new outage starts on a day that ends compromised after one that ended clean
+    public double[] get_times_compromised_distribution() {
+        return solve(Metric.TIMES_COMPROMISED, days);
+    }
+
+    // P(days of data lost = k), every outage starting on day d loses d % backup_frequency days
+    public double[] get_days_data_lost_distribution() {
+        return solve(Metric.DAYS_DATA_LOST, get_max_days_data_lost());
+    }
+
+    // P(days compromised < rto), only tracks counts below rto so it takes days * rto steps
+    public double get_rto_pass_probability(int rto) {
+        return rto <= 0 ? 0.0 : sum(solve(Metric.DAYS_COMPROMISED, rto - 1));
+    }
+
+    // P(days of data lost < rpo)
+    public double get_rpo_pass_probability(int rpo) {
+        return rpo <= 0 ? 0.0 : sum(solve(Metric.DAYS_DATA_LOST, rpo - 1));
+    }
+
+    // P(first day compromised = d) for d = 0..days - 1, see get_never_compromised_probability() for the rest
+    public double[] get_first_day_compromised_distribution() {
+        double[] distribution = new double[days];
+        double clean = 1.0;
+        for (int day = 0; day < days; day++) {
+            distribution[day] = clean * compromise[day];
+            clean *= 1.0 - compromise[day];
+        }
+        return distribution;
+    }
+
+    public double get_never_compromised_probability() {
+        double clean = 1.0;
+        for (int day = 0; day < days; day++) {
+            clean *= 1.0 - compromise[day];
+        }
+        return clean;
+    }
+
+    // As if an outage started every day, only the part of the arrays with any probability is ever visited
+    private int get_max_days_data_lost() {
+        int max_value = 0;
+        for (int day = 0; day < days; day++) {
+            max_value += day % backup_frequency;
+        }
+        return max_value;
+    }
+
+    private enum Metric { DAYS_COMPROMISED, TIMES_COMPROMISED, DAYS_DATA_LOST }
+
+    // clean[k] and compromised[k] are the probabilities of the state at the end of the day with the metric at k
+    // Only indexes low..high can be non-zero, probability of the metric going above max_value is dropped
+    private double[] solve(Metric metric, int max_value) {
+        double[] clean = new double[max_value + 1];
+        double[] compromised = new double[max_value + 1];
+        double[] next_clean = new double[max_value + 1];
+        double[] next_compromised = new double[max_value + 1];
+        clean[0] = 1.0;
+        int low = 0;
+        int high = 0;
+
+        for (int day = 0; day < days; day++) {
+            // How much the metric grows when the block is compromised at the end of the day
+            int new_outage = switch (metric) {
+                case DAYS_COMPROMISED, TIMES_COMPROMISED -> 1;
+                case DAYS_DATA_LOST -> day % backup_frequency;
+            };
+            int ongoing_outage = metric == Metric.DAYS_COMPROMISED ? 1 : 0;
+            int next_high = Math.min(max_value, high + Math.max(new_outage, ongoing_outage));
+
+            for (int k = low; k <= next_high; k++) {
+                next_clean[k] = 0.0;
+                next_compromised[k] = 0.0;
+            }
+            for (int k = low; k <= high; k++) {
+                next_clean[k] += clean[k] * (1.0 - compromise[day]) + compromised[k] * patch;
+                if (k + new_outage <= max_value) {
+                    next_compromised[k + new_outage] += clean[k] * compromise[day];
+                }
+                if (k + ongoing_outage <= max_value) {
+                    next_compromised[k + ongoing_outage] += compromised[k] * (1.0 - patch);
+                }
+            }
+
+            double[] swap = clean;
+            clean = next_clean;
+            next_clean = swap;
+            swap = compromised;
+            compromised = next_compromised;
+            next_compromised = swap;
+            high = next_high;
+            while (low < high && clean[low] + compromised[low] < CUTOFF) {
+                clean[low] = 0.0;
+                compromised[low] = 0.0;
+                ++low;
+            }
+            while (high > low && clean[high] + compromised[high] < CUTOFF) {
+                clean[high] = 0.0;
+                compromised[high] = 0.0;
+                --high;
+            }
+        }
+
+        double[] distribution = new double[max_value + 1];
+        for (int k = low; k <= high; k++) {
+            distribution[k] = clean[k] + compromised[k];
+        }
+        return distribution;
+    }
+
+    private static double sum(double[] distribution) {
+        double sum = 0.0;
+        for (double probability : distribution) {
+            sum += probability;
+        }
+        return sum;
+    }
+
+    // Mean of a distribution over 0, 1, 2, ...
+    public static double mean(double[] distribution) {
+        double mean = 0.0;
+        for (int k = 0; k < distribution.length; k++) {
+            mean += k * distribution[k];
+        }
+        return mean;
+    }
+
+    // P(value < limit), e.g. the RTO pass rate from get_days_compromised_distribution() and the rto
+    public static double probability_below(double[] distribution, int limit) {
+        double probability = 0.0;
+        for (int k = 0; k < Math.min(limit, distribution.length); k++) {
+            probability += distribution[k];
+        }
+        return probability;
+    }
+}
@@ -29,15 +29,16 @@
 
 package edu.mit.ll.probability;
 
-import java.security.SecureRandom;
+import java.math.BigInteger;
 
 public class Uniform {
 
-    private final SecureRandom random = new SecureRandom();
+    private final RandomSource random;
     private final int total_probability_space;
 
-    public Uniform(int total_probability_space) {
+    public Uniform(int total_probability_space, RandomSource random) {
         this.total_probability_space = total_probability_space;
+        this.random = random;
     }
 
     public double get_probability(int event_space) {
@@ -49,4 +50,36 @@ public class Uniform {
         int randomValue = random.nextInt(1, this.total_probability_space + 1);
         return get_probability(randomValue) <= probability; // Check if the event occurs
     }
+
+    public long get_threshold(double probability) {
+        return get_threshold(this.total_probability_space, probability);
+    }
+
+    // Compile a probability to a threshold for RandomSource.nextEvent(), once per run instead of once per draw.
+    // eventOccurred() succeeds for the k values in [1, total_probability_space] with get_probability(value) <= probability,
+    // the threshold keeps that same k / total_probability_space chance (to within 2^-63) with one compare per draw
+    public static long get_threshold(int total_probability_space, double probability) {
+        if (total_probability_space <= 0) {
+            throw new IllegalArgumentException("uniform_size must be positive");
+        }
+
+        // Start from the floor and correct for rounding, so k matches the double compare in eventOccurred() exactly
+        long k = (long) Math.floor(Math.max(0.0, Math.min(probability, 1.0)) * total_probability_space);
+        while (k < total_probability_space && (double) (k + 1) / total_probability_space <= probability) {
+            ++k;
+        }
+        while (k > 0 && (double) k / total_probability_space > probability) {
+            --k;
+        }
+        if (k == 0) {
+            return -1;
+        }
+
+        // ceil(k * 2^63 / total_probability_space) - 1
+        BigInteger size = BigInteger.valueOf(total_probability_space);
+        return BigInteger.valueOf(k).shiftLeft(63)
+                .add(size.subtract(BigInteger.ONE))
+                .divide(size)
+                .longValue() - 1;
+    }
 }
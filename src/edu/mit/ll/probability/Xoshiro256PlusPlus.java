@@ -0,0 +1,71 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.probability;
+
+/******************************************************************************
+ *  xoshiro256++ 1.0, a small and fast all-purpose generator with 256 bits of state.
+ *  The state is seeded with SplitMix64 as recommended by the authors.
+ * <p>
+ *  Reference: Scrambled Linear Pseudorandom Number Generators by David Blackman and Sebastiano Vigna.
+ *  <a href="https://prng.di.unimi.it/">Paper and C code</a>
+ ******************************************************************************/
+public class Xoshiro256PlusPlus implements RandomSource {
+
+    private long s0;
+    private long s1;
+    private long s2;
+    private long s3;
+
+    public Xoshiro256PlusPlus(long seed) {
+        long x = seed;
+        s0 = RandomSource.mix64(x += 0x9E3779B97F4A7C15L);
+        s1 = RandomSource.mix64(x += 0x9E3779B97F4A7C15L);
+        s2 = RandomSource.mix64(x += 0x9E3779B97F4A7C15L);
+        s3 = RandomSource.mix64(x + 0x9E3779B97F4A7C15L);
+    }
+
+    @Override
+    public long nextLong() {
+        final long result = Long.rotateLeft(s0 + s3, 23) + s0;
+        final long t = s1 << 17;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+        return result;
+    }
+
+    @Override
+    public RandomSource split() {
+        return new Xoshiro256PlusPlus(nextLong());
+    }
+}
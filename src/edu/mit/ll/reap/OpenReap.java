@@ -38,10 +38,24 @@ import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Class;
 
 import edu.mit.ll.sysml.BDDInfo;
 import edu.mit.ll.sysml.InstInfo;
-import edu.mit.ll.probability.Gaussian;
+import edu.mit.ll.probability.RandomSource;
+import edu.mit.ll.simulation.BlockGraph;
+import edu.mit.ll.simulation.ExactSolver;
+import edu.mit.ll.simulation.ImportanceSamplingMonteCarlo;
+import edu.mit.ll.simulation.IncrementalMonteCarlo;
+import edu.mit.ll.simulation.MeanFieldEstimator;
+import edu.mit.ll.simulation.MonteCarlo;
+import edu.mit.ll.simulation.PairedMonteCarlo;
+import edu.mit.ll.simulation.ParameterSweep;
+import edu.mit.ll.simulation.SequentialMonteCarlo;
+import edu.mit.ll.simulation.StreamingBlockSummary;
+import edu.mit.ll.simulation.TransitionMatrixSolver;
+import edu.mit.ll.simulation_results.BitTimeline;
+import edu.mit.ll.simulation_results.DailyPercentileEnvelope;
+import edu.mit.ll.simulation_results.DataLostByBackupFrequency;
+import edu.mit.ll.simulation_results.PairedComparison;
 import edu.mit.ll.simulation_results.SimulationBlockSummary;
 import edu.mit.ll.simulation_results.SimulationOverallSummary;
-import edu.mit.ll.probability.Uniform;
 
 import javax.annotation.CheckForNull;
 import javax.swing.*;
@@ -59,6 +73,7 @@ import edu.mit.ll.ui.ConfigInput;
 import edu.mit.ll.ui.MainMenu;
 import edu.mit.ll.ui.SelectBlock;
 import edu.mit.ll.ui.SlotInput;
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.jfree.data.xy.XYSeriesCollection;
@@ -69,6 +84,7 @@ import static edu.mit.ll.sysml.logging.log;
 import static edu.mit.ll.input_validation.InputValidation.*;
 import static edu.mit.ll.input_validation.FileIO.*;
 import static edu.mit.ll.plots.LineGraph.createDataset;
+import static edu.mit.ll.plots.LineGraph.createFanChart;
 import static edu.mit.ll.plots.LineGraph.createLineGraph;
 import static edu.mit.ll.plots.Toukey.createBoxAndWhiskerPlot;
 import static edu.mit.ll.reap.Reap.selectWorkingDirectory;
@@ -79,12 +95,16 @@ public class OpenReap extends MDAction {
     private HashMap<String, HashMap<String, Double>> block_validation;
     private HashMap<String, Object> config;
     private static final String NONE = "None";
+    // Only the first simulations get their own line chart, see write_daily_envelope()
+    private static final int MAX_SIMULATION_GRAPHS = 30;
     private static final String THREAT_LIKELIHOOD_KEY = "threat_likelihood";
     // Maps: map[block][security_property] = HTTPS, etc.
     private final HashMap<String, HashMap<String, String>> security_property_sheet = new HashMap<>();
-    private final Set<Class> selected_blocks = new HashSet<>();
     private final Set<Class> starting_blocks = new HashSet<>();
     private final HashMap<String, Double> threat_likelihood_by_block = new HashMap<>();
+    // The simulations of the last incremental run and the settings they were run with, see get_incremental_run()
+    private IncrementalMonteCarlo incremental_run;
+    private String incremental_settings;
 
     private Project project;
     private DiagramPresentationElement bdd;
@@ -100,27 +120,33 @@ public class OpenReap extends MDAction {
 
 
     public boolean validate_blocks(InstInfo instInfo) throws IOException, ReadOnlyElementException {
+        return validate_blocks(instInfo, block_validation, "");
+    }
+
+    // Same check against another weight set, e.g. a compare_weights file, 'source' is added to the messages
+    private boolean validate_blocks(InstInfo instInfo, HashMap<String, HashMap<String, Double>> weights,
+                                    String source) {
 
         for (Class block: instInfo.blockMultiplicity.keySet()) {
-            for (String security_property_key : block_validation.keySet()) {
+            for (String security_property_key : weights.keySet()) {
 
                 // First, I need to confirm the tag name exists
                 Object value = getValueProperty(block, security_property_key);
                 if (value == null) {
-                    JOptionPane.showMessageDialog(null, "The block " + block.getName() + " is missing the " + security_property_key + " tag!");
+                    JOptionPane.showMessageDialog(null, "The block " + block.getName() + " is missing the " + security_property_key + " tag" + source + "!");
                     return false;
                 }
 
                 // I will assume all properties we need customers to set are strings...
                 if (!(value instanceof String tag_value)) {
-                    JOptionPane.showMessageDialog(null, "The block " + block.getName() + " has an invalid " + security_property_key + " tag (It isn't a String)!");
+                    JOptionPane.showMessageDialog(null, "The block " + block.getName() + " has an invalid " + security_property_key + " tag (It isn't a String)" + source + "!");
                     return false;
                 }
                 else {
                     // The Hashmap contains all possible values for a specific security property and its weight adjustment
-                    HashMap<String, Double> validating_values = block_validation.get(security_property_key);
+                    HashMap<String, Double> validating_values = weights.get(security_property_key);
                     if (!validating_values.containsKey(tag_value)) {
-                        JOptionPane.showMessageDialog(null, "The block " + block.getName() + " has an invalid value " + value + " on the tag name: " + security_property_key + "!");
+                        JOptionPane.showMessageDialog(null, "The block " + block.getName() + " has an invalid value " + value + " on the tag name: " + security_property_key + source + "!");
                         return false;
                     }
                 }
@@ -144,170 +170,265 @@ public class OpenReap extends MDAction {
         int rto = (Integer) config.get("rto");
         int rpo = (Integer) config.get("rpo");
         boolean populate_blocks = (Boolean) config.get("populate_blocks");
-        Uniform uniform = new Uniform(uniform_size);
+        int backup_frequency = (Integer) config.get("backup_frequency");
+        boolean parallel = (Boolean) config.getOrDefault("parallel", Boolean.FALSE);
+        boolean summary_only = (Boolean) config.getOrDefault("summary_only", Boolean.FALSE);
+        boolean pre_screen = (Boolean) config.getOrDefault("pre_screen", Boolean.FALSE);
+        boolean incremental = (Boolean) config.getOrDefault("incremental", Boolean.FALSE);
+        String engine = (String) config.getOrDefault("engine", MonteCarlo.DAILY);
+        // With a precision, 'simulations' is only the most that will run
+        double precision = ((Number) config.getOrDefault("precision", 0.0)).doubleValue();
+        // Above 1, rare RTO/RPO violations are importance sampled, which is always summary only
+        double importance_tilt = ((Number) config.getOrDefault("importance_tilt", 1.0)).doubleValue();
+        if (importance_tilt > 1 && precision > 0) {
+            log("precision is ignored with importance_tilt, running all " + number_of_simulations + " simulations",
+                    "Warning", "warn");
+            precision = 0;
+        }
+        long seed = ((Number) config.getOrDefault("seed", -1)).longValue();
+        if (seed < 0 && incremental && incremental_run != null) {
+            // What-if loops keep the seed of the previous run, so only the changed likelihoods change the results
+            seed = incremental_run.get_seed();
+            log("No seed set, reusing the seed of the previous incremental run " + seed);
+        }
+        else if (seed < 0) {
+            seed = RandomSource.randomSeed() & Long.MAX_VALUE;
+            log("No seed set, this run used seed " + seed, "Warning", "warn");
+        }
+
+        // Threat likelihoods under every weight set to compare against, before adjust_threat() updates the blocks
+        String compare_weights = (String) config.getOrDefault("compare_weights", "");
+        List<String> comparison_names = new ArrayList<>();
+        List<Map<String, Double>> comparison_threat_likelihoods = new ArrayList<>();
+        for (String weights_file : compare_weights.split(",")) {
+            if (weights_file.isBlank()) {
+                continue;
+            }
+            HashMap<String, HashMap<String, Double>> weights = read_validating_json(weights_file.trim());
+            // Every tag value of every block needs a weight in the alternative too, checked before anything runs
+            if (!validate_blocks(instInfo, weights, " (in " + weights_file.trim() + ")")) {
+                log("Stopped, " + weights_file.trim() + " in compare_weights doesn't cover the block tags",
+                        "Warning", "warn");
+                return;
+            }
+            HashMap<String, Double> threat_likelihoods = new HashMap<>();
+            for (Class block : instInfo.blockMultiplicity.keySet()) {
+                Double pwned_likelihood = get_adjusted_threat(block, weights);
+                if (pwned_likelihood != null) {
+                    threat_likelihoods.put(block.getName(), pwned_likelihood);
+                }
+            }
+            comparison_names.add(Paths.get(weights_file.trim()).getFileName().toString());
+            comparison_threat_likelihoods.add(threat_likelihoods);
+        }
 
         // Based on Security property, change default threat_likelihood
         adjust_threat(project, instInfo);
 
-        // For each block, I want the column summary of Simulations too
-        List<SimulationOverallSummary> simulation_results = new ArrayList<>();
-        List<Class> all_new_targets = new ArrayList<>();
-        HashMap<String, Boolean> current_block_states = new HashMap<>();
-
-        // For each simulation...
-        for (int simulation = 0; simulation < number_of_simulations; simulation++) {
+        // Snapshot the block graph once, the simulations never walk the model associations again
+        BlockGraph graph = createBlockGraph(instInfo.blockMultiplicity.keySet(), starting_blocks, threat_likelihood_by_block);
 
-            SimulationOverallSummary current_simulation = new SimulationOverallSummary();
+        // A quick estimate first, so a run that isn't worth it can be stopped before the simulations
+        if (pre_screen) {
+            MeanFieldEstimator estimator = new MeanFieldEstimator(graph, days, distribution, patch_probability,
+                    uniform_size);
+            estimator.run(rto, rpo, backup_frequency);
+            write_mean_field_estimate(estimator, output_directory);
 
-            // For EVERY block, track if this block is compromised or not
-            // Assume no block is compromised on the first day
-            for (Class block: instInfo.blockMultiplicity.keySet()) {
-                current_block_states.put(block.getName(), Boolean.FALSE);
+            double peak_compromised = 0;
+            for (double expected_compromised : estimator.get_expected_compromised_by_day()) {
+                peak_compromised = Math.max(peak_compromised, expected_compromised);
             }
+            int rto_failing = 0;
+            int rpo_failing = 0;
+            for (int block = 0; block < graph.size(); block++) {
+                rto_failing += estimator.get_rto_pass_probability(block) < 0.5 ? 1 : 0;
+                rpo_failing += estimator.get_rpo_pass_probability(block) < 0.5 ? 1 : 0;
+            }
+            String estimate = String.format("Estimated at most %.1f of %d blocks compromised on any day, "
+                            + "%d blocks likely to fail the RTO and %d the RPO (see mean_field_estimate.xlsx).",
+                    peak_compromised, graph.size(), rto_failing, rpo_failing);
+            log(estimate);
+            int answer = JOptionPane.showConfirmDialog(null,
+                    estimate + "\nRun the " + number_of_simulations + " simulations?",
+                    "Pre-screen", JOptionPane.YES_NO_OPTION);
+            if (answer != JOptionPane.YES_OPTION) {
+                log("Stopped after the pre-screen, no simulations were run");
+                return;
+            }
+        }
 
-            // For each in-scope block, run the simulation for each day
-            for (int i = 0; i < days; i++) {
-                // For each day I need to check if a new block is in-scope of getting compromised now
-                for (Class in_scope_block : selected_blocks) {
-                    Boolean is_compromised = current_block_states.get(in_scope_block.getName());
-
-                    // If the block is compromised, add all neighbors to be in-scope
-                    if (is_compromised) {
-                        List<Class> new_neighbors = searchConnectedBlocks(in_scope_block);
-                        StringBuilder debug = new StringBuilder();
-                        for (Class block : new_neighbors) {
-                            debug.append(block.getName()).append(";");
-                        }
-                        log("Block " + in_scope_block.getName() + " is compromised, adding neighbors: " + debug);
-                        all_new_targets.addAll(new_neighbors);
+        // Small models over long horizons only need the expected results, without simulating every day
+        if (engine.equals(MonteCarlo.MATRIX)) {
+            if (TransitionMatrixSolver.can_solve(graph)) {
+                TransitionMatrixSolver solver = new TransitionMatrixSolver(graph, days, distribution,
+                        patch_probability, uniform_size);
+                solver.run();
+                log("Solved the expected compromise of all blocks over " + days + " days");
+                write_expected_compromise(solver, output_directory);
+                if (populate_blocks) {
+                    for (Class block : instInfo.blockMultiplicity.keySet()) {
+                        createValueProperty(project, block, "Average_Days_Pwned",
+                                solver.get_expected_days_compromised(graph.get_block_id(block.getName())));
                     }
                 }
+                return;
+            }
+            log("The matrix engine only solves models of up to " + TransitionMatrixSolver.MAX_BLOCKS
+                    + " blocks, running the daily engine instead", "Warning", "warn");
+        }
 
-                // Remember, you can't update a list while iterating in a for loop!
-                // For good measure, I'll clear the new_targets list once I am done
-                // I also record the number of blocks that can now be attacked for this day
-                selected_blocks.addAll(all_new_targets);
-                current_simulation.add_in_scope_blocks(selected_blocks.size());
-                all_new_targets.clear();
-
-                // Iterate through every block for the day i
-                for (Class block: instInfo.blockMultiplicity.keySet()) {
-                    double pwned_probability;
-                    String block_name = block.getName();
-
-                    // Otherwise, check the current status, likely false
-                    Boolean is_compromised = current_block_states.get(block_name);
-
-                    // If you are in-scope, roll the die if you got compromised
-                    if (selected_blocks.contains(block)) {
-                        // Attacker Model
-                        // If you aren't hacked already, I am going after you
-                        if (!is_compromised) {
-                            pwned_probability = threat_likelihood_by_block.get(block_name);
-
-                            // Update the block with the new cyber_state
-                            if (distribution.equals("normal")) {
-                                if(Gaussian.eventOccurred(pwned_probability, 0, 1)) {
-                                    is_compromised = Boolean.TRUE;
-                                }
-                            }
-                            else if (distribution.equals("uniform")) {
-                                if (uniform.eventOccurred(pwned_probability)) {
-                                    is_compromised = Boolean.TRUE;
-                                }
-                            }
-                        }
-                    }
-
-                    // TODO: Race condition, a block can be patched and compromised in the same day
-                    // Defender Model, applied to all blocks
-                    // If P (Clean) happens, set Clean regardless.
-                    // Consider these regular patching updates or already planned vulnerability fixes
-                    if (distribution.equals("normal")) {
-                        if (Gaussian.eventOccurred(patch_probability, 0, 1)) {
-                            is_compromised = Boolean.FALSE;
-                        }
-                    }
-                    else if (distribution.equals("uniform")) {
-                        if (uniform.eventOccurred(patch_probability)) {
-                            is_compromised = Boolean.FALSE;
-                        }
-                    }
+        // A grid of settings, only patch_likelihood needs its own simulations, the rest are scored from them
+        String sweep_spec = (String) config.getOrDefault("sweep", "");
+        if (!sweep_spec.isBlank()) {
+            LinkedHashMap<String, double[]> sweep_values = ParameterSweep.parse(sweep_spec);
+            ParameterSweep sweep = new ParameterSweep(graph, days, distribution, uniform_size, seed, engine,
+                    sweep_values.getOrDefault(ParameterSweep.PATCH_LIKELIHOOD, new double[]{patch_probability}),
+                    ParameterSweep.to_ints(sweep_values.getOrDefault(ParameterSweep.BACKUP_FREQUENCY,
+                            new double[]{backup_frequency})),
+                    ParameterSweep.to_ints(sweep_values.getOrDefault(ParameterSweep.RTO, new double[]{rto})),
+                    ParameterSweep.to_ints(sweep_values.getOrDefault(ParameterSweep.RPO, new double[]{rpo})));
+            sweep.run(number_of_simulations, parallel);
+            log("Ran " + number_of_simulations + " simulations for each of "
+                    + sweep.get_patch_likelihoods().length + " patch likelihoods in the sweep");
+            write_sweep_compliance(sweep, output_directory);
+            return;
+        }
 
-                    // Collect the status of the block for the specific day
-                    current_simulation.addStatus(block_name, is_compromised);
-                    current_block_states.put(block_name, is_compromised);
+        // Each simulation runs in its own context, so they can be spread over all cores
+        MonteCarlo monte_carlo = new MonteCarlo(graph, days, distribution, patch_probability, uniform_size, seed,
+                engine);
+        SequentialMonteCarlo sequential = new SequentialMonteCarlo(monte_carlo, number_of_simulations, precision);
+        HashMap<String, SimulationBlockSummary> simulation_block_data;
+        // Blocks that are always in scope don't need to be sampled
+        boolean exact = engine.equals(MonteCarlo.EXACT) && importance_tilt <= 1 && ExactSolver.can_solve(graph);
+        if (engine.equals(MonteCarlo.EXACT) && !exact) {
+            log("The exact engine needs every block to be a starting block, running the daily engine instead",
+                    "Warning", "warn");
+        }
+        // What-if mode, only redoes the simulations that changed threat likelihoods affect since the last run
+        IncrementalMonteCarlo incremental_results = incremental && !exact && importance_tilt <= 1
+                ? get_incremental_run(graph, days, distribution, patch_probability, uniform_size, seed,
+                        number_of_simulations, parallel)
+                : null;
+        if (summary_only || importance_tilt > 1 || exact || incremental_results != null) {
+            // Only the per-block statistics are kept, so there is no simulation_summary.xlsx
+            // or per-simulation graph, and recompute_outputs() can't be used on this run
+            if (exact) {
+                simulation_block_data = new ExactSolver(graph, days, distribution, patch_probability, uniform_size)
+                        .run_summary_only(number_of_simulations, rto, rpo, backup_frequency);
+                precision = 0;
+            }
+            else if (incremental_results != null) {
+                simulation_block_data = incremental_results.get_block_summaries(rto, rpo, backup_frequency);
+                if (!engine.equals(MonteCarlo.DAILY) || precision > 0 || !summary_only) {
+                    log("Incremental runs use the daily engine, run all " + number_of_simulations
+                            + " simulations and are summary only, engine, precision and summary_only were ignored",
+                            "Warning", "warn");
                 }
-
-                // I need to update the in-scope blocks
-                // You may lose in-scope blocks because some blocks got patched,
-                // But you should ALWAYS have your initial block be vulnerable
-                selected_blocks.clear();
-                selected_blocks.addAll(starting_blocks);
-                for (Class block: instInfo.blockMultiplicity.keySet()) {
-                    // If the block is compromised,
-                    // next day, we will check its neighbors to attempt to infect
-                    if (current_block_states.get(block.getName())) {
-                        selected_blocks.add(block);
-                    }
+                precision = 0;
+            }
+            else if (importance_tilt > 1) {
+                ImportanceSamplingMonteCarlo importance_sampling = new ImportanceSamplingMonteCarlo(graph, days,
+                        distribution, patch_probability, uniform_size, seed, importance_tilt);
+                simulation_block_data = importance_sampling.run_summary_only(number_of_simulations, parallel,
+                        rto, rpo, backup_frequency);
+                log("Importance sampling with tilt " + importance_tilt + ", the " + number_of_simulations
+                        + " simulations are worth " + String.format("%.1f", simulation_block_data.values().iterator()
+                        .next().get_effective_simulations()) + " plain simulations");
+            }
+            else if (precision > 0) {
+                simulation_block_data = sequential.run_summary_only(parallel, rto, rpo, backup_frequency);
+                number_of_simulations = simulation_block_data.values().iterator().next().get_simulations();
+            }
+            else {
+                StreamingBlockSummary summary = new StreamingBlockSummary(graph, rto, rpo, backup_frequency);
+                // A parallel run fills one envelope per worker, the extra one is what they are merged into
+                int envelopes = parallel ? Runtime.getRuntime().availableProcessors() + 1 : 1;
+                boolean daily_envelope = DailyPercentileEnvelope.fits(days, graph.size(), envelopes);
+                if (daily_envelope) {
+                    summary.enable_daily_envelope(days);
+                }
+                else {
+                    log("The daily envelope is too large to keep for this many blocks and days, "
+                            + "daily_envelope.xlsx is not written", "Warning", "warn");
                 }
+                monte_carlo.run_summary_only(0, number_of_simulations, parallel, summary);
+                simulation_block_data = summary.get_block_summaries();
+                if (daily_envelope) {
+                    write_daily_envelope(summary.get_daily_envelope(), output_directory);
+                }
+            }
+            log("Finished running " + number_of_simulations + " simulations for all blocks in-scope");
+            if (((Number) config.getOrDefault("max_backup_frequency", 0)).intValue() > 0) {
+                log("max_backup_frequency needs the daily timelines, which summary only runs don't keep, "
+                        + "use a sweep over backup_frequency instead", "Warning", "warn");
+            }
 
-                // At the end of the day, check some last piece of data for overall simulation results
-                int compromised_blocks = count_compromised_blocks(current_block_states);
-                current_simulation.add_number_compromised_blocks(compromised_blocks);
+            List<String> all_blocks = new ArrayList<>();
+            for (int block = 0; block < graph.size(); block++) {
+                all_blocks.add(graph.get_block_name(block));
             }
-            // for loop, days for the block in-scope
-            simulation_results.add(current_simulation);
-            log("Finished running simulation " + simulation + " for all blocks in-scope");
+            write_block_summary(simulation_block_data, all_blocks, number_of_simulations, output_directory);
         }
-
-        // Should have same number of simulations
-        assert number_of_simulations == simulation_results.size();
-
-        // Write out a new Excel sheet of simulation results
-        try (Workbook workbook = new XSSFWorkbook()) {
-            for (int simulation = 0; simulation < number_of_simulations; simulation++) {
-                SimulationOverallSummary sim = simulation_results.get(simulation);
-
-                // Get the worksheet and add it to the workbook
-                sim.toExcelSheet(workbook, simulation);
-
-                XYSeriesCollection plot = createDataset(
-                        List.of(sim.getTotal_in_scope_blocks(), sim.getTotal_compromised_blocks()),
-                        List.of("In-Scope Blocks", "Compromised Blocks")
-                );
-
-                createLineGraph(
-                        plot,
-                        "Simulation " + simulation + " block compromised state",
-                        "Day",
-                        "Number of Blocks",
-                        output_directory
-                                + FileSystems.getDefault().getSeparator()
-                                + "simulation_" + simulation + ".png"
-                );
+        else {
+            List<SimulationOverallSummary> simulation_results;
+            if (precision > 0) {
+                simulation_results = sequential.run(parallel, rto, rpo, backup_frequency);
+                number_of_simulations = simulation_results.size();
             }
-
-            // Save the workbook to a file
-            try (FileOutputStream fileOut = new FileOutputStream(output_directory
-                    + FileSystems.getDefault().getSeparator() + "simulation_summary.xlsx")) {
-                workbook.write(fileOut);
+            else {
+                simulation_results = monte_carlo.run(number_of_simulations, parallel);
             }
+            log("Finished running " + number_of_simulations + " simulations for all blocks in-scope");
+
+            // Should have same number of simulations
+            assert number_of_simulations == simulation_results.size();
+            write_simulation_summary(simulation_results, output_directory);
+            DailyPercentileEnvelope daily_envelope = new DailyPercentileEnvelope(days);
+            for (SimulationOverallSummary simulation_result : simulation_results) {
+                daily_envelope.add_simulation(simulation_result);
+            }
+            write_daily_envelope(daily_envelope, output_directory);
+
+            // Write out a new Excel sheet of simulation data - by block though
+            simulation_block_data = compute_block_summary(simulation_results, output_directory);
+        }
+        if (precision > 0) {
+            log("Stopped after " + number_of_simulations + " of at most " + config.get("simulations")
+                    + " simulations, every RTO/RPO pass rate and average days compromised is within +/- "
+                    + String.format("%.4f", SequentialMonteCarlo.get_half_width(simulation_block_data, days))
+                    + " (95% confidence, target " + precision + ")");
+        }
+
+        // Rerun the same simulations under every other weight set, sharing random numbers with a baseline run
+        if (!comparison_names.isEmpty()) {
+            PairedMonteCarlo paired = new PairedMonteCarlo(graph, days, distribution, patch_probability, uniform_size,
+                    seed, comparison_names, comparison_threat_likelihoods);
+            List<PairedComparison> comparisons = paired.run(number_of_simulations, parallel,
+                    rto, rpo, backup_frequency);
+            log("Finished comparing " + comparisons.size() + " weight sets over " + number_of_simulations + " simulations");
+            write_weight_comparison(comparisons, output_directory);
         }
 
-        // Write out a new Excel sheet of simulation data - by block though
-        HashMap<String, SimulationBlockSummary> simulation_block_data = compute_block_summary(simulation_results, output_directory);
+        // Importance sampled histograms are of the tilted simulations without their weights, so averages,
+        // compliance and box plots from them would be biased toward compromise
+        if (importance_tilt > 1) {
+            log("Importance sampled runs don't populate block averages or RTO/RPO compliance, and have no box plots, "
+                    + "see the pass rates in the RPO/RTO compliance sheet", "Warning", "warn");
+            return;
+        }
 
         // Suggesting the blocks should record average results of simulation on the block.
         for (Class block: instInfo.blockMultiplicity.keySet()) {
             SimulationBlockSummary block_summary = simulation_block_data.get(block.getName());
-            block_summary.compute_summary(block_summary.get_first_day_compromised());
+            block_summary.compute_summary(block_summary.get_first_day_compromised_histogram());
             if (populate_blocks) {
                 createValueProperty(project, block, "Average_Times_Pwned", block_summary.average);
             }
 
             // Check if RPO compliant, minimum acceptable data loss
-            block_summary.compute_summary(block_summary.get_days_data_lost());
+            block_summary.compute_summary(block_summary.get_days_data_lost_histogram());
             if (populate_blocks) {
                 createValueProperty(project, block, "Average_Days_Data_Lost", block_summary.average);
             }
@@ -324,7 +445,7 @@ public class OpenReap extends MDAction {
             }
 
             // Check if RTO compliant, minimum acceptable downtime
-            block_summary.compute_summary(block_summary.get_days_compromised());
+            block_summary.compute_summary(block_summary.get_days_compromised_histogram());
             if (populate_blocks) {
                 createValueProperty(project, block, "Average_Days_Pwned", block_summary.average);
             }
@@ -343,7 +464,7 @@ public class OpenReap extends MDAction {
             String output_graph = Paths.get(output_directory,
                     block.getName() + " days compromised.png").toString();
 
-            createBoxAndWhiskerPlot(block.getName(), block_summary.get_days_compromised(),
+            createBoxAndWhiskerPlot(block.getName(), block_summary.get_days_compromised_histogram(),
                     "Days compromised for " + block.getName() + " over all simulations",
                     "Block",
                     "Days",
@@ -353,7 +474,7 @@ public class OpenReap extends MDAction {
             output_graph = Paths.get(output_directory,
                     block.getName() + " times compromised.png").toString();
 
-            createBoxAndWhiskerPlot(block.getName(), block_summary.get_days_compromised(),
+            createBoxAndWhiskerPlot(block.getName(), block_summary.get_times_compromised_histogram(),
                     "Number of times compromised for " + block.getName() + " over all simulations",
                     "Block",
                     "Amount of times hacked",
@@ -361,6 +482,68 @@ public class OpenReap extends MDAction {
         }
     }
 
+    // Write out a new Excel sheet of simulation results, and graph the first simulations
+    // All simulations together are in the daily envelope fan chart
+    private void write_simulation_summary(List<SimulationOverallSummary> simulation_results,
+                                          String output_directory) throws IOException {
+        try (Workbook workbook = new XSSFWorkbook()) {
+            for (int simulation = 0; simulation < simulation_results.size(); simulation++) {
+                SimulationOverallSummary sim = simulation_results.get(simulation);
+
+                // Get the worksheet and add it to the workbook
+                sim.toExcelSheet(workbook, simulation);
+                if (simulation >= MAX_SIMULATION_GRAPHS) {
+                    continue;
+                }
+
+                XYSeriesCollection plot = createDataset(
+                        List.of(sim.getTotal_in_scope_blocks(), sim.getTotal_compromised_blocks()),
+                        List.of("In-Scope Blocks", "Compromised Blocks")
+                );
+
+                createLineGraph(
+                        plot,
+                        "Simulation " + simulation + " block compromised state",
+                        "Day",
+                        "Number of Blocks",
+                        output_directory
+                                + FileSystems.getDefault().getSeparator()
+                                + "simulation_" + simulation + ".png"
+                );
+            }
+
+            // Save the workbook to a file
+            try (FileOutputStream fileOut = new FileOutputStream(output_directory
+                    + FileSystems.getDefault().getSeparator() + "simulation_summary.xlsx")) {
+                workbook.write(fileOut);
+            }
+        }
+    }
+
+    // Percentiles of the compromised and in-scope blocks on every day over all simulations, and their fan chart
+    private void write_daily_envelope(DailyPercentileEnvelope daily_envelope, String output_directory)
+            throws IOException {
+        try (Workbook workbook = new XSSFWorkbook()) {
+            daily_envelope.toExcelSheet(workbook);
+
+            // Save the workbook to a file
+            try (FileOutputStream fileOut = new FileOutputStream(output_directory
+                    + FileSystems.getDefault().getSeparator() + "daily_envelope.xlsx")) {
+                workbook.write(fileOut);
+            }
+        }
+
+        createFanChart(
+                daily_envelope,
+                "Blocks compromised and in-scope over " + daily_envelope.get_simulations() + " simulations",
+                "Day",
+                "Number of Blocks",
+                output_directory
+                        + FileSystems.getDefault().getSeparator()
+                        + "daily_envelope.png"
+        );
+    }
+
     private HashMap<String, SimulationBlockSummary> compute_block_summary(
             List<SimulationOverallSummary> simulation_results,
                                        String output_directory) throws IOException {
@@ -369,9 +552,11 @@ public class OpenReap extends MDAction {
         int rto = (Integer) config.get("rto");
         int rpo = (Integer) config.get("rpo");
         int backup_frequency = (Integer) config.get("backup_frequency");
+        // Above 0, the RPO is also scored for every backup frequency up to this one
+        int max_backup_frequency = ((Number) config.getOrDefault("max_backup_frequency", 0)).intValue();
         Set<String> all_blocks = simulation_results.get(0).getAllBlocks();
         int number_of_simulations = simulation_results.size();
-        String suffix = "_rto=" + rto + "_rpo=" + rpo + "_backup_freq=" + backup_frequency;
+        HashMap<String, DataLostByBackupFrequency> data_lost_by_backup_frequency = new HashMap<>();
 
         // Finished the simulation, collect the results of this simulation
         // with the perspective for each block
@@ -382,15 +567,33 @@ public class OpenReap extends MDAction {
                     simulation_block_data.put(block_name, new SimulationBlockSummary(rto, rpo));
                 }
 
-                List<Boolean> block_states = current_simulation.get_block_status(block_name);
-                simulation_block_data.get(block_name).days_compromised(block_states); // RTO
-                // You can get -1 if no first day ever occurred
-                simulation_block_data.get(block_name).first_day_compromised(block_states);
-                simulation_block_data.get(block_name).times_compromised(block_states);
-                simulation_block_data.get(block_name).total_days_lost(backup_frequency, block_states); // RPO
+                // All four metrics in one pass over the bit-packed timeline
+                BitTimeline timeline = current_simulation.get_block_timeline(block_name);
+                simulation_block_data.get(block_name).add_timeline(timeline, backup_frequency);
+                if (max_backup_frequency > 0) {
+                    data_lost_by_backup_frequency.computeIfAbsent(block_name, name -> new DataLostByBackupFrequency(
+                                    DataLostByBackupFrequency.up_to(max_backup_frequency)))
+                            .add_timeline(timeline);
+                }
             }
         }
 
+        write_block_summary(simulation_block_data, all_blocks, number_of_simulations, output_directory);
+        if (max_backup_frequency > 0) {
+            write_rpo_by_backup_frequency(data_lost_by_backup_frequency, all_blocks, output_directory);
+        }
+        return simulation_block_data;
+    }
+
+    private void write_block_summary(HashMap<String, SimulationBlockSummary> simulation_block_data,
+                                     Collection<String> all_blocks,
+                                     int number_of_simulations,
+                                     String output_directory) throws IOException {
+        int rto = (Integer) config.get("rto");
+        int rpo = (Integer) config.get("rpo");
+        int backup_frequency = (Integer) config.get("backup_frequency");
+        String suffix = "_rto=" + rto + "_rpo=" + rpo + "_backup_freq=" + backup_frequency;
+
         // Create overall RTO/RPO sheet
         try (Workbook workbook = new XSSFWorkbook()) {
             Sheet sheet = workbook.createSheet("RTO-RPO Analysis");
@@ -400,14 +603,31 @@ public class OpenReap extends MDAction {
             headerRow.createCell(0).setCellValue("Block Name");
             headerRow.createCell(1).setCellValue("RPO Compliant out of " + number_of_simulations + " simulations");
             headerRow.createCell(2).setCellValue("RTO Compliant out of " + number_of_simulations + " simulations");
+            // Precision of the results, 95% confidence interval half-widths
+            headerRow.createCell(3).setCellValue("RPO Pass Rate +/-");
+            headerRow.createCell(4).setCellValue("RTO Pass Rate +/-");
+            headerRow.createCell(5).setCellValue("Average Days Compromised +/-");
 
             int i = 0;
             for (String block_name : all_blocks) {
                 SimulationBlockSummary block_summary = simulation_block_data.get(block_name);
                 Row row = sheet.createRow(i + 1);
                 row.createCell(0).setCellValue(block_name);
-                row.createCell(1).setCellValue(block_summary.get_simulations_rpo_passed());
-                row.createCell(2).setCellValue(block_summary.get_simulations_rto_passed());
+                if (block_summary.is_weighted() || block_summary.is_exact()) {
+                    // Importance sampling or the exact engine, the expected number of passing simulations
+                    row.createCell(1).setCellValue(block_summary.get_rpo_pass_rate() * number_of_simulations);
+                    row.createCell(2).setCellValue(block_summary.get_rto_pass_rate() * number_of_simulations);
+                }
+                else {
+                    row.createCell(1).setCellValue(block_summary.get_simulations_rpo_passed());
+                    row.createCell(2).setCellValue(block_summary.get_simulations_rto_passed());
+                }
+                // Exact results have no sampling error, so no confidence intervals
+                if (!block_summary.is_exact()) {
+                    row.createCell(3).setCellValue(block_summary.get_rpo_passed_half_width());
+                    row.createCell(4).setCellValue(block_summary.get_rto_passed_half_width());
+                    row.createCell(5).setCellValue(block_summary.get_days_compromised_half_width());
+                }
                 i++;
             }
 
@@ -422,6 +642,16 @@ public class OpenReap extends MDAction {
             throw new RuntimeException(e);
         }
 
+        // Pass rates for every other RTO and RPO, so trying other thresholds doesn't need recompute_outputs()
+        // Importance sampled histograms are of the tilted simulations, their pass rates would be biased
+        if (simulation_block_data.get(all_blocks.iterator().next()).is_weighted()) {
+            log("Importance sampled runs have no compliance curves, only the pass rates for the configured RTO/RPO",
+                    "Warning", "warn");
+        }
+        else {
+            write_compliance_curves(simulation_block_data, all_blocks, backup_frequency, output_directory);
+        }
+
         // Write out a new Excel sheet of simulation results, but based on blocks
         try (Workbook workbook = new XSSFWorkbook()) {
             for (String block_name : all_blocks) {
@@ -435,17 +665,257 @@ public class OpenReap extends MDAction {
                 workbook.write(fileOut);
             }
         }
-        return simulation_block_data;
     }
 
-    public int count_compromised_blocks(HashMap<String, Boolean> current_block_states) {
-        int compromised_blocks = 0;
-        for (String current_block: current_block_states.keySet()) {
-            if (current_block_states.get(current_block)) {
-                ++compromised_blocks;
+    // One sheet per block, RPO pass rates for every backup frequency and threshold
+    private void write_rpo_by_backup_frequency(HashMap<String, DataLostByBackupFrequency> data_lost_by_backup_frequency,
+                                               Collection<String> all_blocks,
+                                               String output_directory) throws IOException {
+        try (Workbook workbook = new XSSFWorkbook()) {
+            for (String block_name : all_blocks) {
+                data_lost_by_backup_frequency.get(block_name).toExcelSheet(workbook, block_name);
+            }
+
+            // Save the workbook to a file
+            try (FileOutputStream fileOut = new FileOutputStream(output_directory
+                    + FileSystems.getDefault().getSeparator() + "RPO_Backup_Frequency.xlsx")) {
+                workbook.write(fileOut);
+            }
+        }
+    }
+
+    // One sheet each for RTO and RPO, with each block's pass rate at every threshold from 0 up to where all pass
+    private void write_compliance_curves(HashMap<String, SimulationBlockSummary> simulation_block_data,
+                                         Collection<String> all_blocks,
+                                         int backup_frequency,
+                                         String output_directory) throws IOException {
+        int days = (Integer) config.get("days");
+        try (Workbook workbook = new XSSFWorkbook()) {
+            Sheet rto_sheet = workbook.createSheet("RTO Pass Rate");
+            Sheet rpo_sheet = workbook.createSheet("RPO Pass Rate");
+            Row rto_header = rto_sheet.createRow(0);
+            Row rpo_header = rpo_sheet.createRow(0);
+            rto_header.createCell(0).setCellValue("RTO (days)");
+            rpo_header.createCell(0).setCellValue("RPO (days)");
+            // Days of data lost can add up to more than 'days' over several outages
+            int max_rto = days + 1;
+            int max_rpo = days + 1;
+            int column = 1;
+            for (String block_name : all_blocks) {
+                SimulationBlockSummary block_summary = simulation_block_data.get(block_name);
+                rto_header.createCell(column).setCellValue(block_name);
+                rpo_header.createCell(column).setCellValue(block_name);
+                if (block_summary.get_simulations() > 0) {
+                    max_rto = Math.max(max_rto, block_summary.get_days_compromised_histogram().max() + 1);
+                    max_rpo = Math.max(max_rpo, block_summary.get_days_data_lost_histogram().max() + 1);
+                }
+                column++;
+            }
+
+            for (int threshold = 0; threshold <= Math.max(max_rto, max_rpo); threshold++) {
+                Row rto_row = threshold <= max_rto ? rto_sheet.createRow(threshold + 1) : null;
+                Row rpo_row = threshold <= max_rpo ? rpo_sheet.createRow(threshold + 1) : null;
+                if (rto_row != null) {
+                    rto_row.createCell(0).setCellValue(threshold);
+                }
+                if (rpo_row != null) {
+                    rpo_row.createCell(0).setCellValue(threshold);
+                }
+                column = 1;
+                for (String block_name : all_blocks) {
+                    SimulationBlockSummary block_summary = simulation_block_data.get(block_name);
+                    double simulations = block_summary.get_simulations();
+                    if (rto_row != null) {
+                        rto_row.createCell(column).setCellValue(
+                                block_summary.get_simulations_rto_passed(threshold) / simulations);
+                    }
+                    if (rpo_row != null) {
+                        rpo_row.createCell(column).setCellValue(
+                                block_summary.get_simulations_rpo_passed(threshold) / simulations);
+                    }
+                    column++;
+                }
+            }
+
+            // Save the workbook to a file
+            try (FileOutputStream fileOut = new FileOutputStream(output_directory
+                    + FileSystems.getDefault().getSeparator() + "RPO_RTO_Compliance_Curves_backup_freq="
+                    + backup_frequency + ".xlsx")) {
+                workbook.write(fileOut);
+            }
+        }
+    }
+
+    // Reuses the last incremental run if only threat likelihoods changed since, re-simulating what they affect
+    // Otherwise runs and keeps all the simulations, returns null if they are too large to keep
+    private IncrementalMonteCarlo get_incremental_run(BlockGraph graph, int days, String distribution,
+                                                      double patch_probability, int uniform_size,
+                                                      long seed, int number_of_simulations, boolean parallel) {
+        String settings = days + "," + number_of_simulations + "," + distribution + "," + patch_probability + ","
+                + uniform_size;
+        if (incremental_run != null && settings.equals(incremental_settings)
+                && incremental_run.get_graph().has_same_structure(graph)
+                && seed == incremental_run.get_seed()) {
+            int changed_blocks = 0;
+            int changed_simulations = 0;
+            for (int block = 0; block < graph.size(); block++) {
+                // Compared to the thresholds of the last run, a likelihood that didn't change re-simulates nothing
+                int changed = incremental_run.update_threat_likelihood(block, graph.get_threat_likelihood(block),
+                        parallel);
+                changed_blocks += changed > 0 ? 1 : 0;
+                changed_simulations += changed;
+            }
+            log("Incremental run with the seed of the previous run " + incremental_run.get_seed() + ", "
+                    + changed_blocks + " blocks changed, " + changed_simulations + " simulations were re-simulated");
+            return incremental_run;
+        }
+
+        if (!IncrementalMonteCarlo.fits(graph, days, number_of_simulations)) {
+            log("The simulations are too large to keep for an incremental run, running them normally",
+                    "Warning", "warn");
+            incremental_run = null;
+            return null;
+        }
+        incremental_run = new IncrementalMonteCarlo(graph, days, distribution, patch_probability, uniform_size, seed);
+        incremental_run.run(number_of_simulations, parallel);
+        incremental_settings = settings;
+        return incremental_run;
+    }
+
+    // Expected results of the matrix engine, one row per block
+    private void write_expected_compromise(TransitionMatrixSolver solver, String output_directory)
+            throws IOException {
+        try (Workbook workbook = new XSSFWorkbook()) {
+            Sheet sheet = workbook.createSheet("Expected Compromise");
+            Row headerRow = sheet.createRow(0);
+            headerRow.createCell(0).setCellValue("Block Name");
+            headerRow.createCell(1).setCellValue("Expected Days Compromised");
+            headerRow.createCell(2).setCellValue("Probability Compromised on the Last Day");
+            headerRow.createCell(3).setCellValue("Long Run Fraction of Days Compromised");
+            BlockGraph graph = solver.get_graph();
+            for (int block = 0; block < graph.size(); block++) {
+                Row row = sheet.createRow(block + 1);
+                row.createCell(0).setCellValue(graph.get_block_name(block));
+                row.createCell(1).setCellValue(solver.get_expected_days_compromised(block));
+                row.createCell(2).setCellValue(solver.get_last_day_compromised(block));
+                row.createCell(3).setCellValue(solver.get_long_run_compromised(block));
+            }
+
+            // Save the workbook to a file
+            try (FileOutputStream fileOut = new FileOutputStream(output_directory
+                    + FileSystems.getDefault().getSeparator() + "expected_compromise.xlsx")) {
+                workbook.write(fileOut);
+            }
+        }
+    }
+
+    // One row per grid point and block of the sweep
+    private void write_sweep_compliance(ParameterSweep sweep, String output_directory) throws IOException {
+        try (Workbook workbook = new XSSFWorkbook()) {
+            Sheet sheet = workbook.createSheet("Sweep Compliance");
+            Row headerRow = sheet.createRow(0);
+            String[] headers = {"Patch Likelihood", "Backup Frequency", "RTO", "RPO", "Block Name", "RTO Pass Rate",
+                    "RTO Pass Rate +/-", "RPO Pass Rate", "RPO Pass Rate +/-"};
+            for (int i = 0; i < headers.length; i++) {
+                headerRow.createCell(i).setCellValue(headers[i]);
+            }
+            BlockGraph graph = sweep.get_graph();
+            long simulations = sweep.get_simulations();
+            int rows = 0;
+            grid:
+            for (int p = 0; p < sweep.get_patch_likelihoods().length; p++) {
+                for (int b = 0; b < sweep.get_backup_frequencies().length; b++) {
+                    for (int rto : sweep.get_rtos()) {
+                        for (int rpo : sweep.get_rpos()) {
+                            for (int block = 0; block < graph.size(); block++) {
+                                if (rows == SpreadsheetVersion.EXCEL2007.getLastRowIndex()) {
+                                    log("The sweep has more rows than fit in sweep_compliance.xlsx, "
+                                            + "the rest are left out", "Warning", "warn");
+                                    break grid;
+                                }
+                                long rto_passed = sweep.get_rto_passed(p, block, rto);
+                                long rpo_passed = sweep.get_rpo_passed(p, b, block, rpo);
+                                Row row = sheet.createRow(++rows);
+                                row.createCell(0).setCellValue(sweep.get_patch_likelihoods()[p]);
+                                row.createCell(1).setCellValue(sweep.get_backup_frequencies()[b]);
+                                row.createCell(2).setCellValue(rto);
+                                row.createCell(3).setCellValue(rpo);
+                                row.createCell(4).setCellValue(graph.get_block_name(block));
+                                row.createCell(5).setCellValue((double) rto_passed / simulations);
+                                row.createCell(6).setCellValue(
+                                        SimulationBlockSummary.get_pass_rate_half_width(rto_passed, simulations));
+                                row.createCell(7).setCellValue((double) rpo_passed / simulations);
+                                row.createCell(8).setCellValue(
+                                        SimulationBlockSummary.get_pass_rate_half_width(rpo_passed, simulations));
+                            }
+                        }
+                    }
+                }
+            }
+
+            // Save the workbook to a file
+            try (FileOutputStream fileOut = new FileOutputStream(output_directory
+                    + FileSystems.getDefault().getSeparator() + "sweep_compliance.xlsx")) {
+                workbook.write(fileOut);
+            }
+        }
+    }
+
+    // Expected compromised and in-scope blocks per day, and the approximate results per block
+    private void write_mean_field_estimate(MeanFieldEstimator estimator, String output_directory)
+            throws IOException {
+        try (Workbook workbook = new XSSFWorkbook()) {
+            Sheet sheet = workbook.createSheet("Days");
+            Row headerRow = sheet.createRow(0);
+            headerRow.createCell(0).setCellValue("Day");
+            headerRow.createCell(1).setCellValue("Expected Compromised Blocks");
+            headerRow.createCell(2).setCellValue("Expected In-Scope Blocks");
+            double[] expected_compromised = estimator.get_expected_compromised_by_day();
+            double[] expected_in_scope = estimator.get_expected_in_scope_by_day();
+            for (int day = 0; day < expected_compromised.length; day++) {
+                Row row = sheet.createRow(day + 1);
+                row.createCell(0).setCellValue(day);
+                row.createCell(1).setCellValue(expected_compromised[day]);
+                row.createCell(2).setCellValue(expected_in_scope[day]);
+            }
+
+            sheet = workbook.createSheet("Blocks");
+            headerRow = sheet.createRow(0);
+            headerRow.createCell(0).setCellValue("Block Name");
+            headerRow.createCell(1).setCellValue("Expected Days Compromised");
+            headerRow.createCell(2).setCellValue("Approximate RPO Pass Rate");
+            headerRow.createCell(3).setCellValue("Approximate RTO Pass Rate");
+            BlockGraph graph = estimator.get_graph();
+            for (int block = 0; block < graph.size(); block++) {
+                Row row = sheet.createRow(block + 1);
+                row.createCell(0).setCellValue(graph.get_block_name(block));
+                row.createCell(1).setCellValue(estimator.get_expected_days_compromised(block));
+                row.createCell(2).setCellValue(estimator.get_rpo_pass_probability(block));
+                row.createCell(3).setCellValue(estimator.get_rto_pass_probability(block));
+            }
+
+            // Save the workbook to a file
+            try (FileOutputStream fileOut = new FileOutputStream(output_directory
+                    + FileSystems.getDefault().getSeparator() + "mean_field_estimate.xlsx")) {
+                workbook.write(fileOut);
+            }
+        }
+    }
+
+    // One sheet per compared weight set, with the change of every block against the current weights
+    private void write_weight_comparison(List<PairedComparison> comparisons, String output_directory)
+            throws IOException {
+        try (Workbook workbook = new XSSFWorkbook()) {
+            for (PairedComparison comparison : comparisons) {
+                comparison.toExcelSheet(workbook);
+            }
+
+            // Save the workbook to a file
+            try (FileOutputStream fileOut = new FileOutputStream(output_directory
+                    + FileSystems.getDefault().getSeparator() + "weight_comparison.xlsx")) {
+                workbook.write(fileOut);
             }
         }
-        return compromised_blocks;
     }
 
     public void init_blocks(Project project, InstInfo instInfo) throws IOException {
@@ -481,23 +951,10 @@ public class OpenReap extends MDAction {
         // Make sure all blocks have cyber_state to false
         for(Class block: instInfo.blockMultiplicity.keySet()) {
             try {
-                // Get the updated value of threat_likelihood
-                Object o = getValueProperty(block, THREAT_LIKELIHOOD_KEY);
-                if (o == null) {
+                Double pwned_likelihood = get_adjusted_threat(block, block_validation);
+                if (pwned_likelihood == null) {
                     continue;
                 }
-                double pwned_likelihood = (Double) o;
-
-                for (Map.Entry<String, HashMap<String, Double>> security_properties : block_validation.entrySet()) {
-                    String security_property_name = security_properties.getKey();
-                    HashMap<String, Double> security_property_values_and_weights = security_properties.getValue();
-
-                    // Get the Security Property and multiply the correct value
-                    String security_property_value = (String) getValueProperty(block, security_property_name);
-                    double modifier = security_property_values_and_weights.get(security_property_value);
-                    log("Updating threat likelihood for " + security_property_name + " with modifier " + modifier, "Warning", "warn");
-                    pwned_likelihood *= modifier;
-                }
 
                 // Write the update value to the block
                 threat_likelihood_by_block.put(block.getName(), pwned_likelihood);
@@ -509,6 +966,33 @@ public class OpenReap extends MDAction {
         }
     }
 
+    // The block's threat_likelihood multiplied by the weight of each of its security property values,
+    // null if the block has no threat_likelihood
+    private Double get_adjusted_threat(Class block, HashMap<String, HashMap<String, Double>> weights) {
+        // Get the updated value of threat_likelihood
+        Object o = getValueProperty(block, THREAT_LIKELIHOOD_KEY);
+        if (o == null) {
+            return null;
+        }
+        double pwned_likelihood = (Double) o;
+
+        for (Map.Entry<String, HashMap<String, Double>> security_properties : weights.entrySet()) {
+            String security_property_name = security_properties.getKey();
+            HashMap<String, Double> security_property_values_and_weights = security_properties.getValue();
+
+            // Get the Security Property and multiply the correct value
+            String security_property_value = (String) getValueProperty(block, security_property_name);
+            Double modifier = security_property_values_and_weights.get(security_property_value);
+            if (modifier == null) {
+                throw new IllegalStateException("No weight for " + security_property_name + " = "
+                        + security_property_value + " of block " + block.getName());
+            }
+            log("Updating threat likelihood for " + security_property_name + " with modifier " + modifier, "Warning", "warn");
+            pwned_likelihood *= modifier;
+        }
+        return pwned_likelihood;
+    }
+
     // Consider this your main function that executes the moment button is pressed
     @Override
     public void actionPerformed(@CheckForNull ActionEvent actionEvent) {
@@ -585,7 +1069,6 @@ public class OpenReap extends MDAction {
                 long startTime = System.currentTimeMillis();
                 runSimulation();
                 starting_blocks.clear();
-                selected_blocks.clear();
                 long endTime = System.currentTimeMillis();
                 long duration = endTime - startTime;
 
@@ -620,7 +1103,6 @@ public class OpenReap extends MDAction {
         SelectBlock block_input = new SelectBlock(bdd);
         block_input.setVisible(true);
         starting_blocks.addAll(block_input.getSelectedBlocks());
-        selected_blocks.addAll(starting_blocks);
     }
 
     /**
@@ -0,0 +1,61 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation;
+
+// Helpers for block sets stored as long[] words, bit (block % 64) of word (block / 64) is set if the block is in the set
+final class BitSets {
+
+    private BitSets() {
+    }
+
+    static long[] create(int number_of_blocks) {
+        return new long[(number_of_blocks + 63) >>> 6];
+    }
+
+    static boolean get(long[] bits, int block) {
+        return (bits[block >>> 6] & (1L << block)) != 0;
+    }
+
+    static void set(long[] bits, int block) {
+        bits[block >>> 6] |= 1L << block;
+    }
+
+    static void clear(long[] bits, int block) {
+        bits[block >>> 6] &= ~(1L << block);
+    }
+
+    static int cardinality(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+}
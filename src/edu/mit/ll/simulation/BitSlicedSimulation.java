@@ -0,0 +1,162 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation;
+
+import edu.mit.ll.probability.RandomSource;
+
+import java.util.Arrays;
+
+// Bit-sliced version of the MonteCarlo daily kernel, runs 64 simulations at once.
+// Every block is a single long and bit i (the lane) is the state of the block in simulation first_simulation + i.
+// Attacks and patches are drawn for all lanes with one RandomSource.nextEventMask() per block per day,
+// and the in-scope set is propagated with a bitwise OR of each compromised block into its neighbors.
+// At the end of each day the lanes are transposed back to one block bitset per simulation for the observers.
+class BitSlicedSimulation {
+
+    static final int LANES = 64;
+
+    private final BlockGraph graph;
+    private final int days;
+    private final long[] pwned_thresholds;
+    private final long patch_threshold;
+
+    BitSlicedSimulation(BlockGraph graph, int days, long[] pwned_thresholds, long patch_threshold) {
+        this.graph = graph;
+        this.days = days;
+        this.pwned_thresholds = pwned_thresholds;
+        this.patch_threshold = patch_threshold;
+    }
+
+    // Runs simulations first_simulation to first_simulation + observers.length - 1, one observer per simulation
+    void run(int first_simulation, RandomSource random, SimulationObserver[] observers) {
+        int number_of_blocks = graph.size();
+        int lanes = observers.length;
+        long active_lanes = lanes == LANES ? -1L : (1L << lanes) - 1;
+        long[] compromised = new long[number_of_blocks];
+        long[] in_scope = new long[number_of_blocks];
+        long[] starting = new long[number_of_blocks];
+        for (int block : graph.get_starting_blocks()) {
+            starting[block] = active_lanes;
+        }
+
+        // Per simulation view of the day, in the same layout the other engines report
+        int words = (number_of_blocks + 63) >>> 6;
+        long[][] lane_compromised = new long[lanes][words];
+        int[] compromised_blocks = new int[lanes];
+        int[] in_scope_blocks = new int[lanes];
+        long[] transpose = new long[LANES];
+
+        for (int lane = 0; lane < lanes; lane++) {
+            observers[lane].start_simulation(first_simulation + lane);
+        }
+
+        for (int day = 0; day < days; day++) {
+            // The initial blocks are always in-scope, compromised blocks and all their neighbors too
+            System.arraycopy(starting, 0, in_scope, 0, number_of_blocks);
+            for (int block = 0; block < number_of_blocks; block++) {
+                long pwned = compromised[block];
+                if (pwned == 0) {
+                    continue;
+                }
+                in_scope[block] |= pwned;
+                for (int edge = graph.neighbors_start(block); edge < graph.neighbors_end(block); edge++) {
+                    in_scope[graph.get_neighbor(edge)] |= pwned;
+                }
+            }
+            count_lanes(in_scope, in_scope_blocks, transpose, null);
+
+            for (int block = 0; block < number_of_blocks; block++) {
+                // Attacker Model, only lanes where the block is in-scope and not hacked already
+                long targets = in_scope[block] & ~compromised[block];
+                if (targets != 0) {
+                    compromised[block] |= random.nextEventMask(pwned_thresholds[block], targets);
+                }
+                // Defender Model, a block can be patched the same day it was compromised
+                if (compromised[block] != 0) {
+                    compromised[block] &= ~random.nextEventMask(patch_threshold, compromised[block]);
+                }
+            }
+            count_lanes(compromised, compromised_blocks, transpose, lane_compromised);
+
+            for (int lane = 0; lane < lanes; lane++) {
+                observers[lane].end_of_day(day, lane_compromised[lane], compromised_blocks[lane], in_scope_blocks[lane]);
+            }
+        }
+
+        for (int lane = 0; lane < lanes; lane++) {
+            observers[lane].end_simulation(first_simulation + lane);
+        }
+    }
+
+    // Counts the blocks set in each lane, and if lane_bits is given, also stores each lane as a block bitset
+    private static void count_lanes(long[] block_lanes, int[] counts, long[] transpose, long[][] lane_bits) {
+        Arrays.fill(counts, 0);
+        int lanes = counts.length;
+        for (int word = 0; word << 6 < block_lanes.length; word++) {
+            int first_block = word << 6;
+            int blocks = Math.min(LANES, block_lanes.length - first_block);
+            long any = 0;
+            for (int i = 0; i < blocks; i++) {
+                transpose[i] = block_lanes[first_block + i];
+                any |= transpose[i];
+            }
+            if (any == 0) {
+                if (lane_bits != null) {
+                    for (int lane = 0; lane < lanes; lane++) {
+                        lane_bits[lane][word] = 0;
+                    }
+                }
+                continue;
+            }
+            for (int i = blocks; i < LANES; i++) {
+                transpose[i] = 0;
+            }
+            transpose64(transpose);
+            for (int lane = 0; lane < lanes; lane++) {
+                counts[lane] += Long.bitCount(transpose[lane]);
+                if (lane_bits != null) {
+                    lane_bits[lane][word] = transpose[lane];
+                }
+            }
+        }
+    }
+
+    // In place transpose of a 64x64 bit matrix, bit j of row i moves to bit i of row j
+    static void transpose64(long[] rows) {
+        long mask = 0x00000000FFFFFFFFL;
+        for (int width = 32; width != 0; width >>= 1, mask ^= (mask << width)) {
+            for (int row = 0; row < 64; row = ((row | width) + 1) & ~width) {
+                long swap = ((rows[row] >>> width) ^ rows[row | width]) & mask;
+                rows[row | width] ^= swap;
+                rows[row] ^= swap << width;
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+// Immutable snapshot of the blocks and their connections, extracted once from the diagram before simulating.
+// Blocks get a dense id in [0, size()), neighbors are stored in compressed sparse row (CSR) form,
+// so finding the neighbors of a compromised block is an array scan instead of walking the model associations.
+public final class BlockGraph {
+
+    private final String[] block_names;
+    private final double[] threat_likelihood;
+    // neighbors of block i are neighbors[neighbor_offsets[i]] ... neighbors[neighbor_offsets[i + 1] - 1]
+    private final int[] neighbor_offsets;
+    private final int[] neighbors;
+    private final int[] starting_blocks;
+    private final HashMap<String, Integer> block_ids;
+
+    private BlockGraph(String[] block_names, double[] threat_likelihood,
+                       int[] neighbor_offsets, int[] neighbors, int[] starting_blocks) {
+        this.block_names = block_names;
+        this.threat_likelihood = threat_likelihood;
+        this.neighbor_offsets = neighbor_offsets;
+        this.neighbors = neighbors;
+        this.starting_blocks = starting_blocks;
+        this.block_ids = new HashMap<>();
+        for (int block = 0; block < block_names.length; block++) {
+            block_ids.put(block_names[block], block);
+        }
+    }
+
+    public int size() {
+        return block_names.length;
+    }
+
+    public int edges() {
+        return neighbors.length;
+    }
+
+    public String get_block_name(int block) {
+        return block_names[block];
+    }
+
+    // Returns -1 if the block is not part of the graph
+    public int get_block_id(String block_name) {
+        return block_ids.getOrDefault(block_name, -1);
+    }
+
+    public double get_threat_likelihood(int block) {
+        return threat_likelihood[block];
+    }
+
+    public int neighbors_start(int block) {
+        return neighbor_offsets[block];
+    }
+
+    public int neighbors_end(int block) {
+        return neighbor_offsets[block + 1];
+    }
+
+    public int get_neighbor(int index) {
+        return neighbors[index];
+    }
+
+    public int[] get_neighbors(int block) {
+        return Arrays.copyOfRange(neighbors, neighbor_offsets[block], neighbor_offsets[block + 1]);
+    }
+
+    public int[] get_starting_blocks() {
+        return starting_blocks.clone();
+    }
+
+    // Same blocks in the same order, connected the same way, only the threat likelihoods may differ
+    public boolean has_same_structure(BlockGraph other) {
+        return Arrays.equals(block_names, other.block_names)
+                && Arrays.equals(neighbor_offsets, other.neighbor_offsets)
+                && Arrays.equals(neighbors, other.neighbors)
+                && Arrays.equals(starting_blocks, other.starting_blocks);
+    }
+
+    public boolean is_starting_block(int block) {
+        for (int start : starting_blocks) {
+            if (start == block) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static class Builder {
+        private final List<String> block_names = new ArrayList<>();
+        private final List<Double> threat_likelihood = new ArrayList<>();
+        private final List<List<Integer>> adjacency = new ArrayList<>();
+        private final List<Integer> starting_blocks = new ArrayList<>();
+        private final HashMap<String, Integer> block_ids = new HashMap<>();
+
+        // Adding the same block name twice returns the id it already has
+        public int add_block(String block_name, double threat_likelihood) {
+            Integer existing = block_ids.get(block_name);
+            if (existing != null) {
+                return existing;
+            }
+            int block = block_names.size();
+            block_ids.put(block_name, block);
+            this.block_names.add(block_name);
+            this.threat_likelihood.add(threat_likelihood);
+            this.adjacency.add(new ArrayList<>());
+            return block;
+        }
+
+        public int get_block_id(String block_name) {
+            return block_ids.getOrDefault(block_name, -1);
+        }
+
+        // A directed edge, if 'from' is compromised 'to' becomes in-scope the next day
+        public void add_edge(int from, int to) {
+            if (from == to || adjacency.get(from).contains(to)) {
+                return;
+            }
+            adjacency.get(from).add(to);
+        }
+
+        public void add_starting_block(int block) {
+            if (!starting_blocks.contains(block)) {
+                starting_blocks.add(block);
+            }
+        }
+
+        public BlockGraph build() {
+            int n = block_names.size();
+            int[] offsets = new int[n + 1];
+            for (int block = 0; block < n; block++) {
+                offsets[block + 1] = offsets[block] + adjacency.get(block).size();
+            }
+
+            int[] flat = new int[offsets[n]];
+            for (int block = 0; block < n; block++) {
+                int index = offsets[block];
+                for (int neighbor : adjacency.get(block)) {
+                    flat[index++] = neighbor;
+                }
+            }
+
+            double[] threats = new double[n];
+            for (int block = 0; block < n; block++) {
+                threats[block] = threat_likelihood.get(block);
+            }
+
+            return new BlockGraph(
+                    block_names.toArray(new String[0]),
+                    threats,
+                    offsets,
+                    flat,
+                    starting_blocks.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+}
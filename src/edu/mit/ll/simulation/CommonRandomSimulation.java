@@ -0,0 +1,138 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation;
+
+import edu.mit.ll.probability.RandomSource;
+
+// The daily kernel with common random numbers: the attack and patch draws of a block on a day
+// only depend on (seed, simulation, block, day), not on what happened before.
+// Two runs that only differ in a few threat likelihoods then see the same randoms everywhere,
+// so their difference is the effect of the change and not Monte Carlo noise.
+class CommonRandomSimulation {
+
+    private final BlockGraph graph;
+    private final int days;
+    private final long seed;
+    private final long[] starting_blocks;
+    private final long[] pwned_thresholds;
+    private final long patch_threshold;
+
+    CommonRandomSimulation(BlockGraph graph, int days, long seed, long[] starting_blocks,
+                           long[] pwned_thresholds, long patch_threshold) {
+        this.graph = graph;
+        this.days = days;
+        this.seed = seed;
+        this.starting_blocks = starting_blocks;
+        this.pwned_thresholds = pwned_thresholds;
+        this.patch_threshold = patch_threshold;
+    }
+
+    void run(int simulation, SimulationObserver observer) {
+        int number_of_blocks = graph.size();
+        long key = RandomSource.splitMix64(seed, simulation);
+        long[] compromised = BitSets.create(number_of_blocks);
+        long[] in_scope = BitSets.create(number_of_blocks);
+        int compromised_blocks = 0;
+        observer.start_simulation(simulation);
+
+        for (int day = 0; day < days; day++) {
+            int in_scope_blocks = MonteCarlo.update_in_scope(graph, starting_blocks, compromised, in_scope);
+            compromised_blocks += run_day(key, day, compromised, in_scope);
+            observer.end_of_day(day, compromised, compromised_blocks, in_scope_blocks);
+        }
+        observer.end_simulation(simulation);
+    }
+
+    // Runs days first_day to days - 1 from the compromised blocks stored for first_day - 1 (none before day 0),
+    // and stores the compromised blocks at the end of each day, day after day, in 'timeline'
+    // The draws don't depend on the earlier days, so the result is the same as running the whole simulation
+    void run(int simulation, int first_day, long[] timeline) {
+        int number_of_blocks = graph.size();
+        long key = RandomSource.splitMix64(seed, simulation);
+        long[] compromised = BitSets.create(number_of_blocks);
+        long[] in_scope = BitSets.create(number_of_blocks);
+        int words = compromised.length;
+        if (first_day > 0) {
+            System.arraycopy(timeline, (first_day - 1) * words, compromised, 0, words);
+        }
+
+        for (int day = first_day; day < days; day++) {
+            MonteCarlo.update_in_scope(graph, starting_blocks, compromised, in_scope);
+            run_day(key, day, compromised, in_scope);
+            System.arraycopy(compromised, 0, timeline, day * words, words);
+        }
+    }
+
+    // Returns the change in the number of compromised blocks
+    private int run_day(long key, int day, long[] compromised, long[] in_scope) {
+        int number_of_blocks = graph.size();
+        int change = 0;
+        for (int block = 0; block < number_of_blocks; block++) {
+            boolean is_compromised = BitSets.get(compromised, block);
+
+            // Attacker Model, if you are in-scope and aren't hacked already, I am going after you
+            if (!is_compromised && BitSets.get(in_scope, block)
+                    && get_attack_draw(key, day, block) <= pwned_thresholds[block]) {
+                BitSets.set(compromised, block);
+                is_compromised = true;
+                ++change;
+            }
+
+            // Defender Model, a block can be patched the same day it was compromised
+            if (is_compromised && get_patch_draw(key, day, block) <= patch_threshold) {
+                BitSets.clear(compromised, block);
+                --change;
+            }
+        }
+        return change;
+    }
+
+    // The draw an attack on the block that day is compared to, key is RandomSource.splitMix64(seed, simulation)
+    // Even counters are attacks, odd counters are patches
+    long get_attack_draw(long key, int day, int block) {
+        return RandomSource.splitMix64(key, ((long) day * graph.size() + block) << 1) >>> 1;
+    }
+
+    private long get_patch_draw(long key, int day, int block) {
+        return RandomSource.splitMix64(key, (((long) day * graph.size() + block) << 1) | 1) >>> 1;
+    }
+
+    long get_key(int simulation) {
+        return RandomSource.splitMix64(seed, simulation);
+    }
+
+    long get_pwned_threshold(int block) {
+        return pwned_thresholds[block];
+    }
+
+    void set_pwned_threshold(int block, long threshold) {
+        pwned_thresholds[block] = threshold;
+    }
+}
@@ -0,0 +1,100 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation;
+
+import edu.mit.ll.probability.RandomSource;
+
+import java.util.Arrays;
+
+// The attack and patch trials of one day for every block, as a uniform sweep over the block ids.
+// Unlike the daily kernel, both trials are drawn for all 64 blocks of any word with an in-scope block,
+// from four interleaved xoshiro256++ streams, so the same sweep can run four blocks at a time
+// on the Vector API (VectorDaySweep) or one block at a time (ScalarDaySweep).
+// Both give the same results for the same state.
+abstract class DaySweep {
+
+    static final int STREAMS = 4;
+    static final int STATE_SIZE = 4 * STREAMS;
+    // Set to false to always use the scalar sweep
+    static final String VECTOR_PROPERTY = "reap.vector";
+
+    // One threshold per block, padded to a multiple of 64 blocks with thresholds that never occur
+    final long[] pwned_thresholds;
+    final long patch_threshold;
+
+    DaySweep(long[] pwned_thresholds, long patch_threshold) {
+        this.pwned_thresholds = Arrays.copyOf(pwned_thresholds, ((pwned_thresholds.length + 63) >>> 6) << 6);
+        Arrays.fill(this.pwned_thresholds, pwned_thresholds.length, this.pwned_thresholds.length, -1L);
+        this.patch_threshold = patch_threshold;
+    }
+
+    // Attacks the in-scope blocks that aren't compromised, then patches, on block bitsets
+    // state holds s0, s1, s2 and s3 of the four streams, see create_state()
+    abstract void step(long[] compromised, long[] in_scope, long[] state);
+
+    abstract boolean is_vectorized();
+
+    static long[] create_state(RandomSource random) {
+        long[] state = new long[STATE_SIZE];
+        for (int i = 0; i < STATE_SIZE; i++) {
+            state[i] = random.nextLong();
+        }
+        // xoshiro can't leave the all zero state
+        for (int stream = 0; stream < STREAMS; stream++) {
+            if ((state[stream] | state[STREAMS + stream] | state[2 * STREAMS + stream] | state[3 * STREAMS + stream]) == 0) {
+                state[stream] = 1;
+            }
+        }
+        return state;
+    }
+
+    // Uses the Vector API when the jdk.incubator.vector module was added to the JVM and the optional
+    // VectorDaySweep from src-vector is on the classpath, the scalar sweep otherwise
+    static DaySweep create(long[] pwned_thresholds, long patch_threshold) {
+        if (vector_available()) {
+            try {
+                return (DaySweep) Class.forName("edu.mit.ll.simulation.VectorDaySweep")
+                        .getDeclaredConstructor(long[].class, long.class)
+                        .newInstance(pwned_thresholds, patch_threshold);
+            }
+            catch (ReflectiveOperationException | LinkageError e) {
+                // Fall through to the scalar sweep
+            }
+        }
+        return new ScalarDaySweep(pwned_thresholds, patch_threshold);
+    }
+
+    static boolean vector_available() {
+        if ("false".equalsIgnoreCase(System.getProperty(VECTOR_PROPERTY))) {
+            return false;
+        }
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    }
+}
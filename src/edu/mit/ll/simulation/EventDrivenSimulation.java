@@ -0,0 +1,249 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation;
+
+import edu.mit.ll.probability.RandomSource;
+
+import java.util.Arrays;
+
+// Event-driven version of the MonteCarlo daily kernel, for sparse models over long horizons.
+// With the in-scope set fixed, every block is a two state chain:
+// a clean in-scope block shows up compromised at the end of a day with probability p * (1 - patch),
+// since it can still be patched the same day it was compromised, and a compromised block is patched with probability patch.
+// Instead of two coin flips per block per day, the day of the next change is drawn from the geometric distribution
+// and kept in a queue. Waiting times are memoryless, so they only need to be redrawn when a block enters the in-scope set
+// or is patched. A draw that lands past the last day is remembered as well, redrawing it whenever a neighbor changes
+// would give the block extra chances to be compromised.
+// The timelines have the same distribution as the daily kernel, but not the same values for a given seed.
+class EventDrivenSimulation {
+
+    private static final int NO_EVENT = -1;
+
+    private final BlockGraph graph;
+    private final int days;
+    private final long[] starting_blocks;
+    private final double[] compromise_probabilities;
+    private final double patch_probability;
+
+    EventDrivenSimulation(BlockGraph graph, int days, long[] starting_blocks,
+                          long[] pwned_thresholds, long patch_threshold) {
+        this.graph = graph;
+        this.days = days;
+        this.starting_blocks = starting_blocks;
+        this.patch_probability = RandomSource.eventProbability(patch_threshold);
+        this.compromise_probabilities = new double[graph.size()];
+        for (int block = 0; block < graph.size(); block++) {
+            compromise_probabilities[block] = RandomSource.eventProbability(pwned_thresholds[block])
+                    * (1.0 - patch_probability);
+        }
+    }
+
+    void run(int simulation, RandomSource random, SimulationObserver observer) {
+        int number_of_blocks = graph.size();
+        long[] compromised = BitSets.create(number_of_blocks);
+        long[] in_scope = BitSets.create(number_of_blocks);
+        // Number of compromised blocks that have this block as a neighbor
+        int[] compromised_neighbors = new int[number_of_blocks];
+        // Day of the pending event of each block, the event in the queue is stale if it doesn't match
+        int[] next_event = new int[number_of_blocks];
+        Arrays.fill(next_event, NO_EVENT);
+        int[] changed = new int[number_of_blocks];
+        EventQueue queue = new EventQueue();
+
+        // Assume no block is compromised on the first day, only the initial blocks are in-scope
+        int compromised_blocks = 0;
+        int in_scope_blocks = 0;
+        for (int block : graph.get_starting_blocks()) {
+            BitSets.set(in_scope, block);
+            ++in_scope_blocks;
+            schedule(queue, next_event, block, 0, compromise_probabilities[block], random);
+        }
+        observer.start_simulation(simulation);
+
+        int day = 0;
+        while (day < days) {
+            // Nothing happens until the next event, still report every day
+            int event_day = queue.is_empty() ? days : EventQueue.day(queue.peek());
+            for (; day < event_day && day < days; day++) {
+                observer.end_of_day(day, compromised, compromised_blocks, in_scope_blocks);
+            }
+            if (day >= days) {
+                break;
+            }
+
+            // Every change today was decided on the in-scope set at the start of the day
+            int number_changed = 0;
+            while (!queue.is_empty() && EventQueue.day(queue.peek()) == day) {
+                int block = EventQueue.block(queue.poll());
+                if (next_event[block] != day) {
+                    continue;
+                }
+                next_event[block] = NO_EVENT;
+                changed[number_changed++] = block;
+
+                int edge_direction;
+                if (BitSets.get(compromised, block)) {
+                    // Defender Model, patched
+                    BitSets.clear(compromised, block);
+                    --compromised_blocks;
+                    edge_direction = -1;
+                }
+                else {
+                    // Attacker Model, compromised and not patched the same day
+                    BitSets.set(compromised, block);
+                    ++compromised_blocks;
+                    edge_direction = 1;
+                    schedule(queue, next_event, block, day + 1, patch_probability, random);
+                }
+                for (int edge = graph.neighbors_start(block); edge < graph.neighbors_end(block); edge++) {
+                    compromised_neighbors[graph.get_neighbor(edge)] += edge_direction;
+                }
+            }
+            observer.end_of_day(day, compromised, compromised_blocks, in_scope_blocks);
+
+            // Only the changed blocks and their neighbors can enter or leave the in-scope set tomorrow
+            for (int i = 0; i < number_changed; i++) {
+                int block = changed[i];
+                in_scope_blocks += update_scope(block, day + 1, compromised, in_scope, compromised_neighbors,
+                        next_event, queue, random);
+                for (int edge = graph.neighbors_start(block); edge < graph.neighbors_end(block); edge++) {
+                    in_scope_blocks += update_scope(graph.get_neighbor(edge), day + 1, compromised, in_scope,
+                            compromised_neighbors, next_event, queue, random);
+                }
+            }
+            day++;
+        }
+        observer.end_simulation(simulation);
+    }
+
+    // Brings the in-scope bit and the pending attack of a block up to date, returns the change in the in-scope count
+    private int update_scope(int block, int from_day, long[] compromised, long[] in_scope, int[] compromised_neighbors,
+                             int[] next_event, EventQueue queue, RandomSource random) {
+        boolean is_compromised = BitSets.get(compromised, block);
+        boolean was_in_scope = BitSets.get(in_scope, block);
+        boolean is_in_scope = is_compromised || compromised_neighbors[block] > 0 || BitSets.get(starting_blocks, block);
+
+        if (!is_compromised) {
+            if (is_in_scope && next_event[block] == NO_EVENT) {
+                schedule(queue, next_event, block, from_day, compromise_probabilities[block], random);
+            }
+            else if (!is_in_scope) {
+                next_event[block] = NO_EVENT;
+            }
+        }
+
+        if (is_in_scope == was_in_scope) {
+            return 0;
+        }
+        if (is_in_scope) {
+            BitSets.set(in_scope, block);
+            return 1;
+        }
+        BitSets.clear(in_scope, block);
+        return -1;
+    }
+
+    // Queues the first day on or after from_day the event happens, if it happens before the simulation ends.
+    // next_event holds that day, or 'days' when it comes too late, and NO_EVENT only when nothing is pending
+    private void schedule(EventQueue queue, int[] next_event, int block, int from_day, double probability,
+                          RandomSource random) {
+        int failures = random.nextGeometric(probability);
+        if (failures >= days - from_day) {
+            // Pending, but after the simulation ends
+            next_event[block] = days;
+            return;
+        }
+        int day = from_day + failures;
+        next_event[block] = day;
+        queue.add(EventQueue.event(day, block));
+    }
+
+    // Binary min-heap of events packed as (day << 32 | block), so events pop in day order
+    static final class EventQueue {
+        private long[] heap = new long[16];
+        private int size = 0;
+
+        static long event(int day, int block) {
+            return ((long) day << 32) | block;
+        }
+
+        static int day(long event) {
+            return (int) (event >>> 32);
+        }
+
+        static int block(long event) {
+            return (int) event;
+        }
+
+        boolean is_empty() {
+            return size == 0;
+        }
+
+        long peek() {
+            return heap[0];
+        }
+
+        void add(long event) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heap[parent] <= event) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = event;
+        }
+
+        long poll() {
+            long top = heap[0];
+            long last = heap[--size];
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (last <= heap[child]) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return top;
+        }
+    }
+}
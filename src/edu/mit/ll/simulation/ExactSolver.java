@@ -0,0 +1,159 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation;
+
+import edu.mit.ll.probability.RandomSource;
+import edu.mit.ll.probability.TwoStateMarkovChain;
+import edu.mit.ll.simulation_results.SimulationBlockSummary;
+
+import java.util.HashMap;
+
+// The exact engine, for graphs where every block is a starting block and so always in scope.
+// The blocks are then independent, and each one is solved as a TwoStateMarkovChain instead of being sampled.
+// To fill the same SimulationBlockSummary as a run, each metric gets the sample of number_of_simulations values
+// that follows its distribution exactly, the value at every (i + 0.5) / number_of_simulations quantile.
+// The RTO and RPO pass rates are the exact probabilities, see SimulationBlockSummary.set_exact_pass_rates().
+public class ExactSolver {
+
+    private final BlockGraph graph;
+    private final int days;
+    // The probabilities the thresholds of a Monte Carlo run give, so the uniform distribution rounds the same way
+    private final double[] attack_probabilities;
+    private final double patch_probability;
+
+    public ExactSolver(BlockGraph graph, int days, String distribution, double patch_probability, int uniform_size) {
+        if (!can_solve(graph)) {
+            throw new IllegalArgumentException("Only graphs where every block is a starting block can be solved exactly");
+        }
+        this.graph = graph;
+        this.days = days;
+        this.attack_probabilities = new double[graph.size()];
+        for (int block = 0; block < graph.size(); block++) {
+            attack_probabilities[block] = RandomSource.eventProbability(
+                    MonteCarlo.get_threshold(distribution, uniform_size, graph.get_threat_likelihood(block)));
+        }
+        this.patch_probability = RandomSource.eventProbability(
+                MonteCarlo.get_threshold(distribution, uniform_size, patch_probability));
+    }
+
+    public static boolean can_solve(BlockGraph graph) {
+        for (int block = 0; block < graph.size(); block++) {
+            if (!graph.is_starting_block(block)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public HashMap<String, SimulationBlockSummary> run_summary_only(int number_of_simulations,
+                                                                    int rto, int rpo, int backup_frequency) {
+        HashMap<String, SimulationBlockSummary> simulation_block_data = new HashMap<>();
+        for (int block = 0; block < graph.size(); block++) {
+            TwoStateMarkovChain chain = new TwoStateMarkovChain(days, attack_probabilities[block], patch_probability,
+                    backup_frequency);
+            int[] days_compromised = get_quantiles(chain.get_days_compromised_distribution(), 0.0,
+                    number_of_simulations);
+            int[] first_day_compromised = get_quantiles(chain.get_first_day_compromised_distribution(),
+                    chain.get_never_compromised_probability(), number_of_simulations);
+            int[] times_compromised = get_quantiles(chain.get_times_compromised_distribution(), 0.0,
+                    number_of_simulations);
+            int[] days_data_lost = get_quantiles(chain.get_days_data_lost_distribution(), 0.0,
+                    number_of_simulations);
+
+            SimulationBlockSummary block_summary = new SimulationBlockSummary(rto, rpo, false);
+            for (int i = 0; i < number_of_simulations; i++) {
+                block_summary.add_simulation(days_compromised[i], first_day_compromised[i], times_compromised[i],
+                        days_data_lost[i]);
+            }
+            block_summary.set_exact_pass_rates(chain.get_rto_pass_probability(rto), chain.get_rpo_pass_probability(rpo));
+            simulation_block_data.put(graph.get_block_name(block), block_summary);
+        }
+        return simulation_block_data;
+    }
+
+    // The value at the (i + 0.5) / n quantile for i = 0..n-1, where -1 has probability 'missing' and comes first
+    private static int[] get_quantiles(double[] distribution, double missing, int n) {
+        int[] quantiles = new int[n];
+        int value = -1;
+        double cumulative = missing;
+        for (int i = 0; i < n; i++) {
+            double quantile = (i + 0.5) / n;
+            while (cumulative < quantile && value < distribution.length - 1) {
+                cumulative += distribution[++value];
+            }
+            quantiles[i] = value;
+        }
+        return quantiles;
+    }
+
+    // Test client, compares the exact solution with a Monte Carlo run on a graph of starting blocks
+    // Usage: ExactSolver [days] [simulations] [backup frequency]
+    public static void main(String[] args) {
+        int days = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int number_of_simulations = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int backup_frequency = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int rto = 10;
+        int rpo = 20;
+
+        BlockGraph.Builder builder = new BlockGraph.Builder();
+        double[] threat_likelihoods = { 0.5, 0.1, 0.01, 0.001 };
+        for (double threat_likelihood : threat_likelihoods) {
+            builder.add_starting_block(builder.add_block("Entry " + threat_likelihood, threat_likelihood));
+        }
+        BlockGraph graph = builder.build();
+
+        for (String distribution : new String[] { "uniform", "normal" }) {
+            long start = System.nanoTime();
+            HashMap<String, SimulationBlockSummary> exact = new ExactSolver(graph, days, distribution, 0.5, 100)
+                    .run_summary_only(number_of_simulations, rto, rpo, backup_frequency);
+            double exact_elapsed = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            HashMap<String, SimulationBlockSummary> sampled = new MonteCarlo(graph, days, distribution, 0.5, 100, 42)
+                    .run_summary_only(number_of_simulations, false, rto, rpo, backup_frequency);
+            double sampled_elapsed = (System.nanoTime() - start) / 1e6;
+            System.out.printf("%s: exact %.1f ms, Monte Carlo %.1f ms%n", distribution, exact_elapsed, sampled_elapsed);
+
+            for (int block = 0; block < graph.size(); block++) {
+                SimulationBlockSummary e = exact.get(graph.get_block_name(block));
+                SimulationBlockSummary s = sampled.get(graph.get_block_name(block));
+                System.out.printf("  %s: RTO pass %.4f / %.4f (+/- %.4f), RPO pass %.4f / %.4f (+/- %.4f), "
+                                + "days compromised %.3f / %.3f, times %.3f / %.3f, data lost %.3f / %.3f, "
+                                + "first day %.2f / %.2f%n",
+                        graph.get_block_name(block),
+                        e.get_rto_pass_rate(), s.get_rto_pass_rate(), s.get_rto_passed_half_width(),
+                        e.get_rpo_pass_rate(), s.get_rpo_pass_rate(), s.get_rpo_passed_half_width(),
+                        e.get_days_compromised_histogram().mean(), s.get_days_compromised_histogram().mean(),
+                        e.get_times_compromised_histogram().mean(), s.get_times_compromised_histogram().mean(),
+                        e.get_days_data_lost_histogram().mean(), s.get_days_data_lost_histogram().mean(),
+                        e.get_first_day_compromised_histogram().mean(), s.get_first_day_compromised_histogram().mean());
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation;
+
+import edu.mit.ll.probability.RandomSource;
+import edu.mit.ll.simulation_results.SimulationBlockSummary;
+
+import java.util.HashMap;
+import java.util.stream.IntStream;
+
+// Rare-event mode: the daily kernel with threat likelihoods multiplied by 'tilt', so RTO/RPO violations
+// of hardened blocks happen often enough to count.
+// No block is tilted above the largest likelihood in the graph, only blocks below it are raised. Every tilted draw
+// makes the weights more uneven, so tilting blocks that already fail often only costs effective simulations.
+// Each simulation is weighted by its likelihood ratio, the product over its attack draws of p / q for a compromise
+// and (1 - p) / (1 - q) otherwise, where p is the real and q the tilted probability.
+// Weighted failure counts are then unbiased for the real likelihoods, see SimulationBlockSummary.add_simulation().
+// Patch draws are not tilted, so they don't change the weight.
+public class ImportanceSamplingMonteCarlo {
+
+    private final BlockGraph graph;
+    private final int days;
+    private final long seed;
+    private final long[] tilted_thresholds;
+    private final long patch_threshold;
+    private final long[] starting_blocks;
+    // Log likelihood ratio of an attack draw that did or didn't compromise the block
+    private final double[] log_ratio_compromised;
+    private final double[] log_ratio_not_compromised;
+
+    public ImportanceSamplingMonteCarlo(BlockGraph graph, int days, String distribution, double patch_probability,
+                                        int uniform_size, long seed, double tilt) {
+        this.graph = graph;
+        this.days = days;
+        this.seed = seed;
+        this.patch_threshold = MonteCarlo.get_threshold(distribution, uniform_size, patch_probability);
+
+        this.tilted_thresholds = new long[graph.size()];
+        this.log_ratio_compromised = new double[graph.size()];
+        this.log_ratio_not_compromised = new double[graph.size()];
+        long max_threshold = -1;
+        for (int block = 0; block < graph.size(); block++) {
+            max_threshold = Math.max(max_threshold,
+                    MonteCarlo.get_threshold(distribution, uniform_size, graph.get_threat_likelihood(block)));
+        }
+        for (int block = 0; block < graph.size(); block++) {
+            long threshold = MonteCarlo.get_threshold(distribution, uniform_size, graph.get_threat_likelihood(block));
+            double probability = RandomSource.eventProbability(threshold);
+            long tilted_threshold = Math.min(RandomSource.eventThreshold(probability * tilt), max_threshold);
+            tilted_thresholds[block] = Math.max(threshold, tilted_threshold);
+            double tilted_probability = RandomSource.eventProbability(tilted_thresholds[block]);
+            // A draw that can't happen under the tilt never adds its ratio, leave it at 0 instead of NaN
+            if (tilted_probability > 0.0) {
+                log_ratio_compromised[block] = Math.log(probability / tilted_probability);
+            }
+            if (tilted_probability < 1.0) {
+                log_ratio_not_compromised[block] = Math.log1p(-probability) - Math.log1p(-tilted_probability);
+            }
+        }
+
+        this.starting_blocks = BitSets.create(graph.size());
+        for (int block : graph.get_starting_blocks()) {
+            BitSets.set(starting_blocks, block);
+        }
+    }
+
+    // Only summaries, a timeline of a tilted simulation says little on its own
+    public HashMap<String, SimulationBlockSummary> run_summary_only(int number_of_simulations, boolean parallel,
+                                                                    int rto, int rpo, int backup_frequency) {
+        StreamingBlockSummary summary = new StreamingBlockSummary(graph, rto, rpo, backup_frequency);
+        if (!parallel) {
+            for (int simulation = 0; simulation < number_of_simulations; simulation++) {
+                run_simulation(simulation, summary);
+            }
+        }
+        else {
+            summary.merge(MonteCarlo.run_on_pool(() -> IntStream.range(0, number_of_simulations)
+                    .parallel()
+                    .collect(summary::create_empty, (worker, simulation) -> run_simulation(simulation, worker),
+                            StreamingBlockSummary::merge)));
+        }
+        return summary.get_block_summaries();
+    }
+
+    void run_simulation(int simulation, StreamingBlockSummary summary) {
+        RandomSource random = RandomSource.forSimulation(seed, simulation);
+        int number_of_blocks = graph.size();
+        long[] compromised = BitSets.create(number_of_blocks);
+        long[] in_scope = BitSets.create(number_of_blocks);
+        int compromised_blocks = 0;
+        double log_weight = 0.0;
+        summary.start_simulation(simulation);
+
+        for (int day = 0; day < days; day++) {
+            int in_scope_blocks = MonteCarlo.update_in_scope(graph, starting_blocks, compromised, in_scope);
+
+            for (int block = 0; block < number_of_blocks; block++) {
+                boolean is_compromised = BitSets.get(compromised, block);
+
+                // Attacker Model with the tilted likelihood, every draw adds to the likelihood ratio
+                if (!is_compromised && BitSets.get(in_scope, block)) {
+                    if (random.nextEvent(tilted_thresholds[block])) {
+                        BitSets.set(compromised, block);
+                        is_compromised = true;
+                        ++compromised_blocks;
+                        log_weight += log_ratio_compromised[block];
+                    }
+                    else {
+                        log_weight += log_ratio_not_compromised[block];
+                    }
+                }
+
+                // Defender Model, applied to all blocks
+                if (random.nextEvent(patch_threshold) && is_compromised) {
+                    BitSets.clear(compromised, block);
+                    --compromised_blocks;
+                }
+            }
+            summary.end_of_day(day, compromised, compromised_blocks, in_scope_blocks);
+        }
+        summary.set_weight(Math.exp(log_weight));
+        summary.end_simulation(simulation);
+    }
+
+    // Test client, estimates the RTO failure rate of a hardened block with plain and importance sampled runs
+    // Usage: ImportanceSamplingMonteCarlo [tilt] [simulations] [days] [rto]
+    public static void main(String[] args) {
+        double tilt = args.length > 0 ? Double.parseDouble(args[0]) : 5.0;
+        int number_of_simulations = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int days = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int rto = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+
+        // A chain of three blocks, the last one hardened like a block with all RMF controls
+        BlockGraph.Builder builder = new BlockGraph.Builder();
+        int entry = builder.add_block("Entry", 0.05);
+        int server = builder.add_block("Server", 0.05);
+        int hardened = builder.add_block("Hardened", 0.05 * 0.2);
+        builder.add_edge(entry, server);
+        builder.add_edge(server, hardened);
+        builder.add_starting_block(entry);
+        BlockGraph graph = builder.build();
+
+        MonteCarlo plain = new MonteCarlo(graph, days, "uniform", 0.5, 1000, 42);
+        ImportanceSamplingMonteCarlo tilted = new ImportanceSamplingMonteCarlo(graph, days, "uniform", 0.5, 1000, 42,
+                tilt);
+        // The plain run gets 10 times the simulations as a reference
+        HashMap<String, SimulationBlockSummary> reference = plain.run_summary_only(10 * number_of_simulations, true,
+                rto, days, 1);
+        HashMap<String, SimulationBlockSummary> plain_results = plain.run_summary_only(number_of_simulations, true,
+                rto, days, 1);
+        HashMap<String, SimulationBlockSummary> tilted_results = tilted.run_summary_only(number_of_simulations, true,
+                rto, days, 1);
+
+        for (String block_name : new String[] { "Entry", "Server", "Hardened" }) {
+            SimulationBlockSummary plain_summary = plain_results.get(block_name);
+            SimulationBlockSummary tilted_summary = tilted_results.get(block_name);
+            System.out.printf("%s: RTO failure rate %.2e reference, %.2e +/- %.1e plain, %.2e +/- %.1e tilted, "
+                            + "%.0f effective simulations%n",
+                    block_name, 1.0 - reference.get(block_name).get_rto_pass_rate(),
+                    1.0 - plain_summary.get_rto_pass_rate(), plain_summary.get_rto_passed_half_width(),
+                    1.0 - tilted_summary.get_rto_pass_rate(), tilted_summary.get_rto_passed_half_width(),
+                    tilted_summary.get_effective_simulations());
+        }
+    }
+}
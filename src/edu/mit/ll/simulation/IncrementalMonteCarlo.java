@@ -0,0 +1,266 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation;
+
+import edu.mit.ll.probability.RandomSource;
+import edu.mit.ll.simulation_results.SimulationBlockSummary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+// What-if mode: keeps every simulation's compromised blocks for every day, so after a threat likelihood changes
+// only the simulations it affects are re-simulated, and only from the first day it makes a difference.
+// Simulations use common random numbers, see CommonRandomSimulation. The draw for an attack on a block only
+// depends on (seed, simulation, block, day), so a simulation only changes on a day the block was attacked
+// with a draw between the old and new thresholds. Up to that day it is the same, and from that day on
+// re-simulating gives exactly what a new run with the new likelihood would.
+// The stored days take simulations * days * ceil(blocks / 64) longs, see fits().
+public class IncrementalMonteCarlo {
+
+    // 256 MB of stored days
+    public static final long MAX_STORED_WORDS = 1L << 25;
+
+    private final BlockGraph graph;
+    private final int days;
+    private final long seed;
+    private final String distribution;
+    private final int uniform_size;
+    private final long[] starting_blocks;
+    private final CommonRandomSimulation simulation;
+    private final int words;
+    // timelines[i] holds the compromised blocks at the end of each day of simulation i, day after day
+    private long[][] timelines = new long[0][];
+
+    public IncrementalMonteCarlo(BlockGraph graph, int days, String distribution, double patch_probability,
+                                 int uniform_size, long seed) {
+        this.graph = graph;
+        this.days = days;
+        this.seed = seed;
+        this.distribution = distribution;
+        this.uniform_size = uniform_size;
+
+        this.starting_blocks = BitSets.create(graph.size());
+        for (int block : graph.get_starting_blocks()) {
+            BitSets.set(starting_blocks, block);
+        }
+        long[] pwned_thresholds = new long[graph.size()];
+        for (int block = 0; block < graph.size(); block++) {
+            pwned_thresholds[block] = MonteCarlo.get_threshold(distribution, uniform_size,
+                    graph.get_threat_likelihood(block));
+        }
+        this.simulation = new CommonRandomSimulation(graph, days, seed, starting_blocks, pwned_thresholds,
+                MonteCarlo.get_threshold(distribution, uniform_size, patch_probability));
+        this.words = starting_blocks.length;
+    }
+
+    public static boolean fits(BlockGraph graph, int days, int number_of_simulations) {
+        return (long) number_of_simulations * days * BitSets.create(graph.size()).length <= MAX_STORED_WORDS;
+    }
+
+    public BlockGraph get_graph() {
+        return graph;
+    }
+
+    public long get_seed() {
+        return seed;
+    }
+
+    public int get_simulations() {
+        return timelines.length;
+    }
+
+    // Runs and stores simulations 0 to number_of_simulations - 1
+    public void run(int number_of_simulations, boolean parallel) {
+        timelines = new long[number_of_simulations][];
+        for_each(IntStream.range(0, number_of_simulations).toArray(), parallel, simulation_number -> {
+            timelines[simulation_number] = new long[days * words];
+            simulation.run(simulation_number, 0, timelines[simulation_number]);
+        });
+    }
+
+    // Re-simulates what the new threat likelihood of the block changes, returns how many simulations changed
+    public int update_threat_likelihood(int block, double threat_likelihood, boolean parallel) {
+        long old_threshold = simulation.get_pwned_threshold(block);
+        long new_threshold = MonteCarlo.get_threshold(distribution, uniform_size, threat_likelihood);
+        if (old_threshold == new_threshold) {
+            return 0;
+        }
+        simulation.set_pwned_threshold(block, new_threshold);
+
+        // Blocks that put 'block' in scope when compromised
+        List<Integer> predecessors = new ArrayList<>();
+        for (int from = 0; from < graph.size(); from++) {
+            for (int edge = graph.neighbors_start(from); edge < graph.neighbors_end(from); edge++) {
+                if (graph.get_neighbor(edge) == block) {
+                    predecessors.add(from);
+                }
+            }
+        }
+        int[] first_changed_days = new int[timelines.length];
+        for_each(IntStream.range(0, timelines.length).toArray(), parallel, simulation_number -> {
+            first_changed_days[simulation_number] = get_first_changed_day(simulation_number, block, predecessors,
+                    Math.min(old_threshold, new_threshold), Math.max(old_threshold, new_threshold));
+            if (first_changed_days[simulation_number] >= 0) {
+                simulation.run(simulation_number, first_changed_days[simulation_number], timelines[simulation_number]);
+            }
+        });
+
+        int changed = 0;
+        for (int first_changed_day : first_changed_days) {
+            changed += first_changed_day >= 0 ? 1 : 0;
+        }
+        return changed;
+    }
+
+    // First day the block was attacked with a draw in (low, high], so the old and new thresholds disagree,
+    // or -1 if there is none
+    private int get_first_changed_day(int simulation_number, int block, List<Integer> predecessors,
+                                      long low, long high) {
+        long[] timeline = timelines[simulation_number];
+        long key = simulation.get_key(simulation_number);
+        boolean is_starting_block = BitSets.get(starting_blocks, block);
+        int word = block >>> 6;
+        long mask = 1L << block;
+
+        for (int day = 0; day < days; day++) {
+            // The state the day starts from, the end of the day before
+            int previous = (day - 1) * words;
+            if (day > 0 && (timeline[previous + word] & mask) != 0) {
+                continue;
+            }
+            boolean in_scope = is_starting_block;
+            for (int i = 0; i < predecessors.size() && !in_scope && day > 0; i++) {
+                int predecessor = predecessors.get(i);
+                in_scope = (timeline[previous + (predecessor >>> 6)] & (1L << predecessor)) != 0;
+            }
+            if (in_scope) {
+                long draw = simulation.get_attack_draw(key, day, block);
+                if (draw > low && draw <= high) {
+                    return day;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void for_each(int[] simulation_numbers, boolean parallel, IntConsumer action) {
+        if (!parallel) {
+            for (int simulation_number : simulation_numbers) {
+                action.accept(simulation_number);
+            }
+            return;
+        }
+        MonteCarlo.run_on_pool(() -> {
+            IntStream.of(simulation_numbers).parallel().forEach(action);
+            return null;
+        });
+    }
+
+    // Block summaries of the stored simulations, replayed through the same observer a summary-only run uses
+    public HashMap<String, SimulationBlockSummary> get_block_summaries(int rto, int rpo, int backup_frequency) {
+        StreamingBlockSummary summary = new StreamingBlockSummary(graph, rto, rpo, backup_frequency);
+        long[] compromised = BitSets.create(graph.size());
+        long[] in_scope = BitSets.create(graph.size());
+        for (int simulation_number = 0; simulation_number < timelines.length; simulation_number++) {
+            long[] timeline = timelines[simulation_number];
+            summary.start_simulation(simulation_number);
+            Arrays.fill(compromised, 0);
+            for (int day = 0; day < days; day++) {
+                int in_scope_blocks = MonteCarlo.update_in_scope(graph, starting_blocks, compromised, in_scope);
+                System.arraycopy(timeline, day * words, compromised, 0, words);
+                summary.end_of_day(day, compromised, BitSets.cardinality(compromised), in_scope_blocks);
+            }
+            summary.end_simulation(simulation_number);
+        }
+        return summary.get_block_summaries();
+    }
+
+    // Test client, changes one block's threat likelihood and compares the update with a full rerun
+    // Usage: IncrementalMonteCarlo [blocks] [days] [simulations] [threat likelihood] [new threat likelihood]
+    public static void main(String[] args) {
+        int number_of_blocks = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int days = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+        int number_of_simulations = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        double threat_likelihood = args.length > 3 ? Double.parseDouble(args[3]) : 0.05;
+        double new_threat_likelihood = args.length > 4 ? Double.parseDouble(args[4]) : 0.01;
+
+        RandomSource random = RandomSource.create(RandomSource.XOSHIRO, 42);
+        BlockGraph.Builder builder = new BlockGraph.Builder();
+        for (int block = 0; block < number_of_blocks; block++) {
+            builder.add_block("Block " + block, threat_likelihood);
+        }
+        for (int edge = 0; edge < 2 * number_of_blocks; edge++) {
+            builder.add_edge(random.nextInt(number_of_blocks), random.nextInt(number_of_blocks));
+        }
+        builder.add_starting_block(0);
+        BlockGraph graph = builder.build();
+        // Change a block that can be reached, one of the starting block's neighbors
+        int changed_block = graph.neighbors_end(0) > graph.neighbors_start(0)
+                ? graph.get_neighbor(graph.neighbors_start(0))
+                : 0;
+
+        IncrementalMonteCarlo incremental = new IncrementalMonteCarlo(graph, days, "uniform", 0.2, 1000, 42);
+        long start = System.nanoTime();
+        incremental.run(number_of_simulations, false);
+        double run_elapsed = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        int changed = incremental.update_threat_likelihood(changed_block, new_threat_likelihood, false);
+        double update_elapsed = (System.nanoTime() - start) / 1e6;
+
+        // The same run from scratch with the new likelihood
+        BlockGraph.Builder changed_builder = new BlockGraph.Builder();
+        for (int block = 0; block < number_of_blocks; block++) {
+            changed_builder.add_block("Block " + block,
+                    block == changed_block ? new_threat_likelihood : threat_likelihood);
+        }
+        for (int block = 0; block < number_of_blocks; block++) {
+            for (int neighbor : graph.get_neighbors(block)) {
+                changed_builder.add_edge(block, neighbor);
+            }
+        }
+        changed_builder.add_starting_block(0);
+        IncrementalMonteCarlo rerun = new IncrementalMonteCarlo(changed_builder.build(), days, "uniform", 0.2, 1000,
+                42);
+        rerun.run(number_of_simulations, false);
+
+        boolean same = true;
+        for (int i = 0; i < number_of_simulations; i++) {
+            same &= Arrays.equals(incremental.timelines[i], rerun.timelines[i]);
+        }
+        System.out.printf("Full run %.1f ms, update of %s re-simulated %d of %d simulations in %.1f ms, "
+                        + "same as a new run: %b%n",
+                run_elapsed, graph.get_block_name(changed_block), changed, number_of_simulations, update_elapsed,
+                same);
+    }
+}
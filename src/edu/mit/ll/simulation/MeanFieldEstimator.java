@@ -0,0 +1,215 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation;
+
+import edu.mit.ll.probability.RandomSource;
+import edu.mit.ll.probability.TwoStateMarkovChain;
+import edu.mit.ll.simulation_results.SimulationBlockSummary;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+// Quick deterministic estimate of a run, before committing to the Monte Carlo simulations.
+// Instead of sampling states, every block keeps the probability it is compromised at the end of each day.
+// A block that isn't a starting block is in scope with probability 1 - prod(1 - c) over the blocks c it is
+// a neighbor of, as if blocks were compromised independently (the mean-field approximation).
+// Each day then costs one pass over the edges. Given its daily chance of being compromised,
+// every block's RTO and RPO pass rates come from a TwoStateMarkovChain, in days * (rto + rpo) steps.
+// The estimate ignores that neighbors are compromised together, so expect it to be off on dense graphs.
+public class MeanFieldEstimator {
+
+    private final BlockGraph graph;
+    private final int days;
+    private final double[] attack_probabilities;
+    private final double patch_probability;
+
+    // Results of run()
+    private double[] expected_compromised_by_day;
+    private double[] expected_in_scope_by_day;
+    private double[] expected_days_compromised;
+    private double[] rto_pass_probabilities;
+    private double[] rpo_pass_probabilities;
+
+    public MeanFieldEstimator(BlockGraph graph, int days, String distribution, double patch_probability,
+                              int uniform_size) {
+        this.graph = graph;
+        this.days = days;
+        this.attack_probabilities = new double[graph.size()];
+        for (int block = 0; block < graph.size(); block++) {
+            attack_probabilities[block] = RandomSource.eventProbability(
+                    MonteCarlo.get_threshold(distribution, uniform_size, graph.get_threat_likelihood(block)));
+        }
+        this.patch_probability = RandomSource.eventProbability(
+                MonteCarlo.get_threshold(distribution, uniform_size, patch_probability));
+    }
+
+    public void run(int rto, int rpo, int backup_frequency) {
+        int number_of_blocks = graph.size();
+        boolean[] starting = new boolean[number_of_blocks];
+        for (int block : graph.get_starting_blocks()) {
+            starting[block] = true;
+        }
+
+        // Probability each block is compromised at the end of the previous day, and not reached by any neighbor
+        double[] compromised = new double[number_of_blocks];
+        double[] not_reached = new double[number_of_blocks];
+        double[][] daily_compromise = new double[number_of_blocks][days];
+        expected_compromised_by_day = new double[days];
+        expected_in_scope_by_day = new double[days];
+        expected_days_compromised = new double[number_of_blocks];
+
+        for (int day = 0; day < days; day++) {
+            Arrays.fill(not_reached, 1.0);
+            for (int block = 0; block < number_of_blocks; block++) {
+                if (compromised[block] > 0.0) {
+                    for (int edge = graph.neighbors_start(block); edge < graph.neighbors_end(block); edge++) {
+                        not_reached[graph.get_neighbor(edge)] *= 1.0 - compromised[block];
+                    }
+                }
+            }
+
+            for (int block = 0; block < number_of_blocks; block++) {
+                double in_scope = starting[block] ? 1.0 : 1.0 - not_reached[block];
+                // Same order as the daily kernel, a clean block in scope is attacked, then any block may be patched
+                double compromise = in_scope * attack_probabilities[block] * (1.0 - patch_probability);
+                daily_compromise[block][day] = compromise;
+                expected_in_scope_by_day[day] += starting[block]
+                        ? 1.0
+                        : 1.0 - (1.0 - compromised[block]) * not_reached[block];
+                compromised[block] = compromised[block] * (1.0 - patch_probability)
+                        + (1.0 - compromised[block]) * compromise;
+                expected_compromised_by_day[day] += compromised[block];
+                expected_days_compromised[block] += compromised[block];
+            }
+        }
+
+        rto_pass_probabilities = new double[number_of_blocks];
+        rpo_pass_probabilities = new double[number_of_blocks];
+        for (int block = 0; block < number_of_blocks; block++) {
+            TwoStateMarkovChain chain = new TwoStateMarkovChain(daily_compromise[block], patch_probability,
+                    backup_frequency);
+            rto_pass_probabilities[block] = chain.get_rto_pass_probability(rto);
+            rpo_pass_probabilities[block] = chain.get_rpo_pass_probability(rpo);
+        }
+    }
+
+    public BlockGraph get_graph() {
+        return graph;
+    }
+
+    public double[] get_expected_compromised_by_day() {
+        return expected_compromised_by_day;
+    }
+
+    public double[] get_expected_in_scope_by_day() {
+        return expected_in_scope_by_day;
+    }
+
+    public double get_expected_days_compromised(int block) {
+        return expected_days_compromised[block];
+    }
+
+    public double get_rto_pass_probability(int block) {
+        return rto_pass_probabilities[block];
+    }
+
+    public double get_rpo_pass_probability(int block) {
+        return rpo_pass_probabilities[block];
+    }
+
+    // Test client, compares the estimate with a Monte Carlo run on a random graph and times a large one
+    // Usage: MeanFieldEstimator [blocks] [days] [simulations] [threat likelihood] [patch likelihood]
+    public static void main(String[] args) {
+        int number_of_blocks = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int days = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+        int number_of_simulations = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        double threat_likelihood = args.length > 3 ? Double.parseDouble(args[3]) : 0.2;
+        double patch_likelihood = args.length > 4 ? Double.parseDouble(args[4]) : 0.1;
+        int rto = 10;
+        int rpo = 20;
+        int backup_frequency = 10;
+
+        for (int size : new int[] { number_of_blocks, 20 * number_of_blocks }) {
+            RandomSource random = RandomSource.create(RandomSource.XOSHIRO, 42);
+            BlockGraph.Builder builder = new BlockGraph.Builder();
+            for (int block = 0; block < size; block++) {
+                builder.add_block("Block " + block, threat_likelihood);
+            }
+            for (int edge = 0; edge < 2 * size; edge++) {
+                builder.add_edge(random.nextInt(size), random.nextInt(size));
+            }
+            builder.add_starting_block(0);
+            BlockGraph graph = builder.build();
+
+            long start = System.nanoTime();
+            MeanFieldEstimator estimator = new MeanFieldEstimator(graph, days, "normal", patch_likelihood, 100);
+            estimator.run(rto, rpo, backup_frequency);
+            System.out.printf("%d blocks, %d edges, %d days: estimate in %.1f ms%n",
+                    size, graph.edges(), days, (System.nanoTime() - start) / 1e6);
+            if (size != number_of_blocks) {
+                continue;
+            }
+
+            MonteCarlo monte_carlo = new MonteCarlo(graph, days, "normal", patch_likelihood, 100, 42);
+            double[] compromised_by_day = new double[days];
+            for (int simulation = 0; simulation < number_of_simulations; simulation++) {
+                monte_carlo.run_simulation(simulation, new SimulationObserver() {
+                    @Override
+                    public void start_simulation(int simulation) {
+                    }
+
+                    @Override
+                    public void end_of_day(int day, long[] compromised, int compromised_blocks, int in_scope_blocks) {
+                        compromised_by_day[day] += (double) compromised_blocks / number_of_simulations;
+                    }
+
+                    @Override
+                    public void end_simulation(int simulation) {
+                    }
+                });
+            }
+            for (int day = 0; day < days; day += days / 6) {
+                System.out.printf("  day %d: expected compromised %.2f estimated, %.2f simulated%n",
+                        day, estimator.get_expected_compromised_by_day()[day], compromised_by_day[day]);
+            }
+
+            HashMap<String, SimulationBlockSummary> results = monte_carlo.run_summary_only(number_of_simulations, false, rto, rpo, backup_frequency);
+            double rto_error = 0;
+            double rpo_error = 0;
+            for (int block = 0; block < size; block++) {
+                SimulationBlockSummary block_summary = results.get(graph.get_block_name(block));
+                rto_error += Math.abs(estimator.get_rto_pass_probability(block) - block_summary.get_rto_pass_rate());
+                rpo_error += Math.abs(estimator.get_rpo_pass_probability(block) - block_summary.get_rpo_pass_rate());
+            }
+            System.out.printf("  mean absolute error of the RTO pass rates %.4f, RPO pass rates %.4f%n",
+                    rto_error / size, rpo_error / size);
+        }
+    }
+}
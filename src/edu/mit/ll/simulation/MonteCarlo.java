@@ -0,0 +1,420 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation;
+
+import edu.mit.ll.probability.Gaussian;
+import edu.mit.ll.probability.RandomSource;
+import edu.mit.ll.probability.Uniform;
+import edu.mit.ll.simulation_results.SimulationBlockSummary;
+import edu.mit.ll.simulation_results.SimulationOverallSummary;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// Runs the Monte Carlo simulations over a BlockGraph snapshot.
+// Every simulation gets its own SimulationContext, so simulations share nothing but the read-only graph
+// and can run on a fork-join pool when 'parallel' is set.
+// Simulation i always draws from RandomSource.forSimulation(seed, i), so a seeded run is reproducible, serial or parallel.
+// The bit-sliced engine runs simulations 64 at a time, each batch drawing from the stream of its first simulation.
+public class MonteCarlo {
+
+    // Simulation engines, see the 'engine' config key
+    public static final String DAILY = "daily";
+    public static final String EVENT = "event";
+    public static final String BIT_SLICED = "bitsliced";
+    public static final String VECTOR = "vector";
+    // Not simulations, see ExactSolver and TransitionMatrixSolver, other graphs run the daily kernel
+    public static final String EXACT = "exact";
+    public static final String MATRIX = "matrix";
+
+    private final BlockGraph graph;
+    private final int days;
+    private final long seed;
+    // Probabilities compiled once per run to thresholds for RandomSource.nextEvent()
+    private final long[] pwned_thresholds;
+    private final long patch_threshold;
+    private final long[] starting_blocks;
+    // Only set for the event, bit-sliced and vector engines
+    private final EventDrivenSimulation event_driven;
+    private final BitSlicedSimulation bit_sliced;
+    private final SweepSimulation sweep;
+
+    public MonteCarlo(BlockGraph graph, int days, String distribution, double patch_probability, int uniform_size,
+                      long seed) {
+        this(graph, days, distribution, patch_probability, uniform_size, seed, DAILY);
+    }
+
+    public MonteCarlo(BlockGraph graph, int days, String distribution, double patch_probability, int uniform_size,
+                      long seed, String engine) {
+        this.graph = graph;
+        this.days = days;
+        this.seed = seed;
+
+        this.pwned_thresholds = new long[graph.size()];
+        for (int block = 0; block < graph.size(); block++) {
+            pwned_thresholds[block] = get_threshold(distribution, uniform_size, graph.get_threat_likelihood(block));
+        }
+        this.patch_threshold = get_threshold(distribution, uniform_size, patch_probability);
+
+        this.starting_blocks = BitSets.create(graph.size());
+        for (int block : graph.get_starting_blocks()) {
+            BitSets.set(starting_blocks, block);
+        }
+
+        this.event_driven = engine.equals(EVENT)
+                ? new EventDrivenSimulation(graph, days, starting_blocks, pwned_thresholds, patch_threshold)
+                : null;
+        this.bit_sliced = engine.equals(BIT_SLICED)
+                ? new BitSlicedSimulation(graph, days, pwned_thresholds, patch_threshold)
+                : null;
+        this.sweep = engine.equals(VECTOR)
+                ? new SweepSimulation(graph, days, starting_blocks, DaySweep.create(pwned_thresholds, patch_threshold))
+                : null;
+    }
+
+    public BlockGraph get_graph() {
+        return graph;
+    }
+
+    public int get_days() {
+        return days;
+    }
+
+    public static long get_threshold(String distribution, int uniform_size, double probability) {
+        if (distribution.equals("normal")) {
+            return Gaussian.get_threshold(probability);
+        }
+        else if (distribution.equals("uniform")) {
+            return Uniform.get_threshold(uniform_size, probability);
+        }
+        return -1;
+    }
+
+    // Results are always returned in simulation order, even when running in parallel
+    public List<SimulationOverallSummary> run(int number_of_simulations, boolean parallel) {
+        return run(0, number_of_simulations, parallel);
+    }
+
+    // Runs simulations first_simulation to first_simulation + number_of_simulations - 1
+    // For the bit-sliced engine, first_simulation should be a multiple of 64 to get the same simulations as one run
+    public List<SimulationOverallSummary> run(int first_simulation, int number_of_simulations, boolean parallel) {
+        int end = first_simulation + number_of_simulations;
+        int first_batch = first_simulation / batch_size();
+        int end_batch = number_of_batches(end);
+        if (!parallel) {
+            List<SimulationOverallSummary> simulation_results = new ArrayList<>();
+            for (int batch = first_batch; batch < end_batch; batch++) {
+                simulation_results.addAll(run_batch(batch, first_simulation, end));
+            }
+            return simulation_results;
+        }
+
+        return run_on_pool(() -> IntStream.range(first_batch, end_batch)
+                .parallel()
+                .mapToObj(batch -> run_batch(batch, first_simulation, end))
+                .flatMap(List::stream)
+                .collect(Collectors.toList()));
+    }
+
+    // Summary-only mode, per-block metrics are updated as each day completes and no timeline is kept
+    public HashMap<String, SimulationBlockSummary> run_summary_only(int number_of_simulations, boolean parallel,
+                                                                    int rto, int rpo, int backup_frequency) {
+        StreamingBlockSummary summary = new StreamingBlockSummary(graph, rto, rpo, backup_frequency);
+        run_summary_only(0, number_of_simulations, parallel, summary);
+        return summary.get_block_summaries();
+    }
+
+    // Adds simulations first_simulation to first_simulation + number_of_simulations - 1 to the summary
+    public void run_summary_only(int first_simulation, int number_of_simulations, boolean parallel,
+                                 StreamingBlockSummary summary) {
+        int end = first_simulation + number_of_simulations;
+        int first_batch = first_simulation / batch_size();
+        int end_batch = number_of_batches(end);
+        if (!parallel) {
+            for (int batch = first_batch; batch < end_batch; batch++) {
+                run_batch(batch, first_simulation, end, summary);
+            }
+            return;
+        }
+
+        summary.merge(run_on_pool(() -> IntStream.range(first_batch, end_batch)
+                .parallel()
+                .collect(summary::create_empty,
+                        (worker, batch) -> run_batch(batch, first_simulation, end, worker),
+                        StreamingBlockSummary::merge)));
+    }
+
+    // Runs a parallel stream task on its own pool, or on the pool of the caller if that already is one of these,
+    // so callers that run many batches, like SequentialMonteCarlo, can create the pool once
+    static <T> T run_on_pool(Callable<T> task) {
+        ForkJoinPool current = ForkJoinTask.getPool();
+        if (current != null && current != ForkJoinPool.commonPool()) {
+            try {
+                return task.call();
+            }
+            catch (RuntimeException e) {
+                throw e;
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            return pool.submit(task).get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    // Simulations are run in batches, the bit-sliced engine runs 64 simulations at once, the others one at a time
+    private int batch_size() {
+        return bit_sliced != null ? BitSlicedSimulation.LANES : 1;
+    }
+
+    private int number_of_batches(int number_of_simulations) {
+        return (number_of_simulations + batch_size() - 1) / batch_size();
+    }
+
+    // Runs the simulations of the batch between start (inclusive) and end (exclusive)
+    private List<SimulationOverallSummary> run_batch(int batch, int start, int end) {
+        int first_simulation = Math.max(start, batch * batch_size());
+        int simulations = Math.min(end, (batch + 1) * batch_size()) - first_simulation;
+        TimelineRecorder[] recorders = new TimelineRecorder[simulations];
+        for (int i = 0; i < simulations; i++) {
+            recorders[i] = new TimelineRecorder(graph, days);
+        }
+        run_simulations(first_simulation, recorders);
+
+        List<SimulationOverallSummary> simulation_results = new ArrayList<>(simulations);
+        for (TimelineRecorder recorder : recorders) {
+            simulation_results.add(recorder.get_summary());
+        }
+        return simulation_results;
+    }
+
+    private void run_batch(int batch, int start, int end, StreamingBlockSummary summary) {
+        int first_simulation = Math.max(start, batch * batch_size());
+        int simulations = Math.min(end, (batch + 1) * batch_size()) - first_simulation;
+        run_simulations(first_simulation, summary.get_lanes(simulations));
+    }
+
+    // Runs simulations first_simulation to first_simulation + observers.length - 1, one observer per simulation
+    // The bit-sliced engine runs them together from the stream of first_simulation, so its results depend
+    // on how the simulations were batched. run() and run_summary_only() always use batches of 64.
+    public void run_simulations(int first_simulation, SimulationObserver[] observers) {
+        if (bit_sliced != null) {
+            bit_sliced.run(first_simulation, RandomSource.forSimulation(seed, first_simulation), observers);
+            return;
+        }
+        for (int i = 0; i < observers.length; i++) {
+            run_simulation(first_simulation + i, observers[i]);
+        }
+    }
+
+    public SimulationOverallSummary run_simulation(int simulation) {
+        TimelineRecorder recorder = new TimelineRecorder(graph, days);
+        run_simulation(simulation, recorder);
+        return recorder.get_summary();
+    }
+
+    // The simulation kernel, reports the state at the end of every day to the observer
+    public void run_simulation(int simulation, SimulationObserver observer) {
+        if (bit_sliced != null) {
+            run_simulations(simulation, new SimulationObserver[] { observer });
+            return;
+        }
+        if (event_driven != null) {
+            event_driven.run(simulation, RandomSource.forSimulation(seed, simulation), observer);
+            return;
+        }
+        if (sweep != null) {
+            sweep.run(simulation, RandomSource.forSimulation(seed, simulation), observer);
+            return;
+        }
+        SimulationContext context = new SimulationContext(graph.size(), RandomSource.forSimulation(seed, simulation));
+        int number_of_blocks = graph.size();
+        long[] compromised = context.compromised;
+        long[] in_scope = context.in_scope;
+        // Assume no block is compromised on the first day
+        int compromised_blocks = 0;
+        observer.start_simulation(simulation);
+
+        for (int day = 0; day < days; day++) {
+            int in_scope_blocks = update_in_scope(graph, starting_blocks, compromised, in_scope);
+
+            // Iterate through every block for the day
+            for (int block = 0; block < number_of_blocks; block++) {
+                int word = block >>> 6;
+                long mask = 1L << block;
+                boolean is_compromised = (compromised[word] & mask) != 0;
+
+                // Attacker Model, if you are in-scope and aren't hacked already, I am going after you
+                if (!is_compromised && (in_scope[word] & mask) != 0 && context.random.nextEvent(pwned_thresholds[block])) {
+                    compromised[word] |= mask;
+                    is_compromised = true;
+                    ++compromised_blocks;
+                }
+
+                // TODO: Race condition, a block can be patched and compromised in the same day
+                // Defender Model, applied to all blocks
+                if (context.random.nextEvent(patch_threshold) && is_compromised) {
+                    compromised[word] &= ~mask;
+                    --compromised_blocks;
+                }
+            }
+            observer.end_of_day(day, compromised, compromised_blocks, in_scope_blocks);
+        }
+        observer.end_simulation(simulation);
+    }
+
+    // Test client, times an engine against the daily kernel on a random graph
+    // For the vector engine, the scalar sweep is timed too, run with --add-modules jdk.incubator.vector
+    // and the classes of src-vector on the classpath
+    // Usage: MonteCarlo [engine] [blocks] [days] [simulations] [threat likelihood] [initial blocks]
+    public static void main(String[] args) {
+        String engine = args.length > 0 ? args[0] : EVENT;
+        int number_of_blocks = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int days = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+        int number_of_simulations = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        double threat_likelihood = args.length > 4 ? Double.parseDouble(args[4]) : 0.001;
+        int number_of_starting_blocks = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+
+        RandomSource random = RandomSource.create(RandomSource.XOSHIRO, 42);
+        BlockGraph.Builder builder = new BlockGraph.Builder();
+        for (int block = 0; block < number_of_blocks; block++) {
+            builder.add_block("Block " + block, threat_likelihood);
+        }
+        for (int edge = 0; edge < 2 * number_of_blocks; edge++) {
+            builder.add_edge(random.nextInt(number_of_blocks), random.nextInt(number_of_blocks));
+        }
+        for (int i = 0; i < number_of_starting_blocks; i++) {
+            builder.add_starting_block((int) ((long) i * number_of_blocks / number_of_starting_blocks));
+        }
+        BlockGraph graph = builder.build();
+
+        List<String> engines = new ArrayList<>(List.of(DAILY, engine));
+        if (engine.equals(VECTOR) && DaySweep.vector_available()) {
+            // Also time the scalar sweep, it gives the same results as the Vector API one
+            engines.add(1, "scalar " + VECTOR);
+        }
+        for (String current_engine : engines) {
+            System.setProperty(DaySweep.VECTOR_PROPERTY, String.valueOf(!current_engine.startsWith("scalar")));
+            MonteCarlo monte_carlo = new MonteCarlo(graph, days, "normal", 0.5, 100, 42,
+                    current_engine.replace("scalar ", ""));
+            // Run once first so the timed run is JIT compiled
+            monte_carlo.run_summary_only(number_of_simulations, false, days, days, 1);
+            long start = System.nanoTime();
+            HashMap<String, SimulationBlockSummary> results = monte_carlo.run_summary_only(number_of_simulations,
+                    false, days, days, 1);
+            double elapsed = (System.nanoTime() - start) / 1e6;
+
+            // Both engines should agree on this up to sampling noise
+            double days_compromised = 0;
+            for (SimulationBlockSummary block_summary : results.values()) {
+                days_compromised += block_summary.get_days_compromised_histogram().mean();
+            }
+            System.out.printf("%s: %.1f ms, average days compromised per block %.3f%n",
+                    current_engine, elapsed, days_compromised / number_of_blocks);
+        }
+
+        // On a random graph errors in how an engine follows the in-scope set mostly cancel out, so also check
+        // a rarely attacked block X whose neighbor Y keeps getting compromised and patched, which updates X's scope
+        BlockGraph.Builder flapping_builder = new BlockGraph.Builder();
+        int x = flapping_builder.add_block("X", 0.002);
+        int y = flapping_builder.add_block("Y", 0.5);
+        flapping_builder.add_edge(y, x);
+        flapping_builder.add_starting_block(x);
+        flapping_builder.add_starting_block(y);
+        BlockGraph flapping_graph = flapping_builder.build();
+        int flapping_simulations = 200_000;
+        for (String current_engine : List.of(DAILY, engine.replace("scalar ", ""))) {
+            HashMap<String, SimulationBlockSummary> results = new MonteCarlo(flapping_graph, 200, "normal", 0.5,
+                    100, 42, current_engine).run_summary_only(flapping_simulations, true, 1, 1, 1);
+            SimulationBlockSummary block_summary = results.get("X");
+            System.out.printf("%s, X next to a flapping block: never compromised %.4f (+/- %.4f), "
+                            + "average days compromised %.3f (+/- %.3f)%n",
+                    current_engine, (double) block_summary.get_simulations_rto_passed() / flapping_simulations,
+                    block_summary.get_rto_passed_half_width(),
+                    block_summary.get_days_compromised_histogram().mean(),
+                    block_summary.get_days_compromised_half_width());
+        }
+    }
+
+    // You may lose in-scope blocks because some blocks got patched,
+    // But you should ALWAYS have your initial block be vulnerable
+    // If a block is compromised, add all its neighbors to be in-scope
+    // Returns the number of in-scope blocks
+    static int update_in_scope(BlockGraph graph, long[] starting_blocks, long[] compromised, long[] in_scope) {
+        for (int word = 0; word < in_scope.length; word++) {
+            in_scope[word] = starting_blocks[word] | compromised[word];
+        }
+        for (int word = 0; word < compromised.length; word++) {
+            long bits = compromised[word];
+            while (bits != 0) {
+                int block = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                for (int edge = graph.neighbors_start(block); edge < graph.neighbors_end(block); edge++) {
+                    BitSets.set(in_scope, graph.get_neighbor(edge));
+                }
+            }
+        }
+        return BitSets.cardinality(in_scope);
+    }
+
+    // Everything a single simulation mutates, never shared between simulations
+    // Block sets are bitsets indexed by the BlockGraph block id, see BitSets
+    private static class SimulationContext {
+        final long[] compromised;
+        final long[] in_scope;
+        final RandomSource random;
+
+        SimulationContext(int number_of_blocks, RandomSource random) {
+            this.compromised = BitSets.create(number_of_blocks);
+            this.in_scope = BitSets.create(number_of_blocks);
+            this.random = random;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation;
+
+import edu.mit.ll.probability.RandomSource;
+import edu.mit.ll.simulation_results.PairedComparison;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+// What-if comparisons between threat likelihoods, e.g. from different block_validation weight sets.
+// The baseline and every alternative run the same simulations with common random numbers, see CommonRandomSimulation,
+// so a block whose likelihood didn't change mostly sees the same outages in both runs.
+// The per-block differences are then much less noisy than comparing two independent runs.
+public class PairedMonteCarlo {
+
+    private final BlockGraph graph;
+    private final List<String> names;
+    private final CommonRandomSimulation baseline;
+    private final List<CommonRandomSimulation> alternatives = new ArrayList<>();
+
+    // The baseline uses the threat likelihoods of the graph, blocks missing from an alternative keep theirs
+    public PairedMonteCarlo(BlockGraph graph, int days, String distribution, double patch_probability, int uniform_size,
+                            long seed, List<String> names, List<Map<String, Double>> threat_likelihoods) {
+        this.graph = graph;
+        this.names = names;
+
+        long[] starting_blocks = BitSets.create(graph.size());
+        for (int block : graph.get_starting_blocks()) {
+            BitSets.set(starting_blocks, block);
+        }
+        long patch_threshold = MonteCarlo.get_threshold(distribution, uniform_size, patch_probability);
+
+        long[] pwned_thresholds = new long[graph.size()];
+        for (int block = 0; block < graph.size(); block++) {
+            pwned_thresholds[block] = MonteCarlo.get_threshold(distribution, uniform_size,
+                    graph.get_threat_likelihood(block));
+        }
+        this.baseline = new CommonRandomSimulation(graph, days, seed, starting_blocks, pwned_thresholds,
+                patch_threshold);
+
+        for (Map<String, Double> alternative : threat_likelihoods) {
+            pwned_thresholds = new long[graph.size()];
+            for (int block = 0; block < graph.size(); block++) {
+                double threat_likelihood = alternative.getOrDefault(graph.get_block_name(block),
+                        graph.get_threat_likelihood(block));
+                pwned_thresholds[block] = MonteCarlo.get_threshold(distribution, uniform_size, threat_likelihood);
+            }
+            alternatives.add(new CommonRandomSimulation(graph, days, seed, starting_blocks, pwned_thresholds,
+                    patch_threshold));
+        }
+    }
+
+    // One comparison per alternative, in the order they were given
+    public List<PairedComparison> run(int number_of_simulations, boolean parallel,
+                                      int rto, int rpo, int backup_frequency) {
+        PairedRun result;
+        if (!parallel) {
+            result = new PairedRun(rto, rpo, backup_frequency);
+            for (int simulation = 0; simulation < number_of_simulations; simulation++) {
+                result.run_simulation(simulation);
+            }
+        }
+        else {
+            result = MonteCarlo.run_on_pool(() -> IntStream.range(0, number_of_simulations)
+                    .parallel()
+                    .collect(() -> new PairedRun(rto, rpo, backup_frequency),
+                            PairedRun::run_simulation,
+                            PairedRun::merge));
+        }
+        return result.get_comparisons();
+    }
+
+    // The summaries and differences of the simulations run by one thread
+    private class PairedRun {
+
+        private final int rto;
+        private final int rpo;
+        private final StreamingBlockSummary baseline_summary;
+        private final StreamingBlockSummary[] alternative_summaries;
+        private final PairedComparison[] comparisons;
+        // Differences of the last simulation, indexed by block id
+        private final int[] rto_passed_difference;
+        private final int[] rpo_passed_difference;
+        private final int[] days_compromised_difference;
+
+        PairedRun(int rto, int rpo, int backup_frequency) {
+            this.rto = rto;
+            this.rpo = rpo;
+            String[] block_names = new String[graph.size()];
+            for (int block = 0; block < graph.size(); block++) {
+                block_names[block] = graph.get_block_name(block);
+            }
+            this.baseline_summary = new StreamingBlockSummary(graph, rto, rpo, backup_frequency);
+            this.alternative_summaries = new StreamingBlockSummary[alternatives.size()];
+            this.comparisons = new PairedComparison[alternatives.size()];
+            for (int i = 0; i < alternatives.size(); i++) {
+                alternative_summaries[i] = baseline_summary.create_empty();
+                comparisons[i] = new PairedComparison(names.get(i), block_names);
+            }
+            this.rto_passed_difference = new int[graph.size()];
+            this.rpo_passed_difference = new int[graph.size()];
+            this.days_compromised_difference = new int[graph.size()];
+        }
+
+        void run_simulation(int simulation) {
+            baseline.run(simulation, baseline_summary);
+            for (int i = 0; i < alternatives.size(); i++) {
+                StreamingBlockSummary alternative_summary = alternative_summaries[i];
+                alternatives.get(i).run(simulation, alternative_summary);
+                for (int block = 0; block < graph.size(); block++) {
+                    rto_passed_difference[block] = rto_passed(alternative_summary, block)
+                            - rto_passed(baseline_summary, block);
+                    rpo_passed_difference[block] = rpo_passed(alternative_summary, block)
+                            - rpo_passed(baseline_summary, block);
+                    days_compromised_difference[block] = alternative_summary.get_last_days_compromised(block)
+                            - baseline_summary.get_last_days_compromised(block);
+                }
+                comparisons[i].add_simulation(rto_passed_difference, rpo_passed_difference,
+                        days_compromised_difference);
+            }
+        }
+
+        // Same pass conditions as SimulationBlockSummary
+        private int rto_passed(StreamingBlockSummary summary, int block) {
+            return rto > summary.get_last_days_compromised(block) ? 1 : 0;
+        }
+
+        private int rpo_passed(StreamingBlockSummary summary, int block) {
+            return rpo > summary.get_last_days_data_lost(block) ? 1 : 0;
+        }
+
+        void merge(PairedRun other) {
+            baseline_summary.merge(other.baseline_summary);
+            for (int i = 0; i < alternatives.size(); i++) {
+                alternative_summaries[i].merge(other.alternative_summaries[i]);
+                comparisons[i].merge(other.comparisons[i]);
+            }
+        }
+
+        List<PairedComparison> get_comparisons() {
+            List<PairedComparison> results = new ArrayList<>();
+            for (int i = 0; i < alternatives.size(); i++) {
+                comparisons[i].set_block_summaries(baseline_summary.get_block_summaries(),
+                        alternative_summaries[i].get_block_summaries());
+                results.add(comparisons[i]);
+            }
+            return results;
+        }
+    }
+
+    // Test client, compares the paired half-width of a difference with the one from two independent runs
+    // Usage: PairedMonteCarlo [blocks] [days] [simulations] [threat likelihood] [changed likelihood]
+    public static void main(String[] args) {
+        int number_of_blocks = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int days = args.length > 1 ? Integer.parseInt(args[1]) : 365;
+        int number_of_simulations = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        double threat_likelihood = args.length > 3 ? Double.parseDouble(args[3]) : 0.05;
+        double changed_likelihood = args.length > 4 ? Double.parseDouble(args[4]) : 0.1;
+        int rto = 20;
+        int rpo = 5;
+
+        RandomSource random = RandomSource.create(RandomSource.XOSHIRO, 42);
+        BlockGraph.Builder builder = new BlockGraph.Builder();
+        for (int block = 0; block < number_of_blocks; block++) {
+            builder.add_block("Block " + block, threat_likelihood);
+        }
+        for (int edge = 0; edge < 2 * number_of_blocks; edge++) {
+            builder.add_edge(random.nextInt(number_of_blocks), random.nextInt(number_of_blocks));
+        }
+        builder.add_starting_block(0);
+        BlockGraph graph = builder.build();
+
+        // Only the starting block gets the new likelihood, as if one of its security properties changed
+        Map<String, Double> alternative = new HashMap<>();
+        alternative.put(graph.get_block_name(0), changed_likelihood);
+        PairedMonteCarlo paired = new PairedMonteCarlo(graph, days, "normal", 0.2, 100, 42,
+                List.of("alternative"), List.of(alternative));
+        PairedComparison comparison = paired.run(number_of_simulations, true, rto, rpo, 7).get(0);
+
+        for (int block = 0; block < Math.min(number_of_blocks, 10); block++) {
+            for (int metric = PairedComparison.RTO_PASSED; metric <= PairedComparison.DAYS_COMPROMISED; metric++) {
+                double paired_half_width = comparison.get_half_width(block, metric);
+                double unpaired_half_width = comparison.get_independent_half_width(block, metric);
+                if (unpaired_half_width == 0.0) {
+                    // Never compromised, or always failing, in both runs
+                    continue;
+                }
+                System.out.printf("%s metric %d: difference %.4f +/- %.4f paired, +/- %.4f independent, "
+                                + "%.1fx fewer simulations%n",
+                        graph.get_block_name(block), metric, comparison.get_mean_difference(block, metric),
+                        paired_half_width, unpaired_half_width,
+                        Math.pow(unpaired_half_width / paired_half_width, 2));
+            }
+        }
+    }
+}
@@ -0,0 +1,329 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation;
+
+import edu.mit.ll.simulation_results.DataLostByBackupFrequency;
+import edu.mit.ll.simulation_results.IntHistogram;
+import edu.mit.ll.simulation_results.SimulationBlockSummary;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.stream.IntStream;
+
+// Runs a grid of patch_likelihood, backup_frequency, rto and rpo values, see the 'sweep' config key.
+// Only patch_likelihood changes how the simulations play out, so each patch likelihood is simulated once.
+// The other three are only used to score the simulations: every block keeps a histogram of its days compromised,
+// and one of its days of data lost per backup frequency, and every rto and rpo is read off those histograms.
+// All patch likelihoods run with the same seed, so their differences are less noisy.
+public class ParameterSweep {
+
+    public static final String PATCH_LIKELIHOOD = "patch_likelihood";
+    public static final String BACKUP_FREQUENCY = "backup_frequency";
+    public static final String RTO = "rto";
+    public static final String RPO = "rpo";
+
+    private final BlockGraph graph;
+    private final double[] patch_likelihoods;
+    private final int[] backup_frequencies;
+    private final int[] rtos;
+    private final int[] rpos;
+    private final MonteCarlo[] monte_carlos;
+    // Results of run(), one per patch likelihood
+    private SweepSummary[] summaries;
+
+    public ParameterSweep(BlockGraph graph, int days, String distribution, int uniform_size, long seed, String engine,
+                          double[] patch_likelihoods, int[] backup_frequencies, int[] rtos, int[] rpos) {
+        this.graph = graph;
+        this.patch_likelihoods = patch_likelihoods;
+        this.backup_frequencies = backup_frequencies;
+        this.rtos = rtos;
+        this.rpos = rpos;
+        this.monte_carlos = new MonteCarlo[patch_likelihoods.length];
+        for (int i = 0; i < patch_likelihoods.length; i++) {
+            monte_carlos[i] = new MonteCarlo(graph, days, distribution, patch_likelihoods[i], uniform_size, seed,
+                    engine);
+        }
+    }
+
+    // Parses "name=values;name=values", values are a list "a,b,c" or a range "from:to:step" that includes 'to'
+    // Throws IllegalArgumentException on anything else
+    public static LinkedHashMap<String, double[]> parse(String sweep) {
+        LinkedHashMap<String, double[]> parameters = new LinkedHashMap<>();
+        for (String parameter : sweep.split(";")) {
+            if (parameter.isBlank()) {
+                continue;
+            }
+            String[] name_and_values = parameter.split("=");
+            if (name_and_values.length != 2) {
+                throw new IllegalArgumentException("Expected name=values in the sweep, got " + parameter.trim());
+            }
+            String name = name_and_values[0].trim();
+            String values = name_and_values[1].trim();
+            double[] parsed;
+            try {
+                if (values.contains(":")) {
+                    String[] range = values.split(":");
+                    if (range.length != 3) {
+                        throw new IllegalArgumentException("Expected from:to:step in the sweep, got " + values);
+                    }
+                    double from = Double.parseDouble(range[0].trim());
+                    double to = Double.parseDouble(range[1].trim());
+                    double step = Double.parseDouble(range[2].trim());
+                    if (!(step > 0) || to < from) {
+                        throw new IllegalArgumentException("Invalid sweep range " + values);
+                    }
+                    int count = (int) Math.floor((to - from) / step + 1e-9) + 1;
+                    parsed = new double[count];
+                    for (int i = 0; i < count; i++) {
+                        // Rounded, so 0.1:0.3:0.1 gives 0.3 and not 0.30000000000000004
+                        parsed[i] = Math.round((from + i * step) * 1e9) / 1e9;
+                    }
+                }
+                else {
+                    parsed = Arrays.stream(values.split(",")).mapToDouble(value -> Double.parseDouble(value.trim()))
+                            .toArray();
+                }
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number in the sweep values " + values);
+            }
+
+            switch (name) {
+                case PATCH_LIKELIHOOD -> {
+                    for (double value : parsed) {
+                        if (value < 0 || value > 1) {
+                            throw new IllegalArgumentException("patch_likelihood must be between 0 and 1, got " + value);
+                        }
+                    }
+                }
+                case BACKUP_FREQUENCY, RTO, RPO -> {
+                    for (double value : parsed) {
+                        if (value != Math.rint(value) || value < (name.equals(BACKUP_FREQUENCY) ? 1 : 0)) {
+                            throw new IllegalArgumentException(name + " must be a whole number"
+                                    + (name.equals(BACKUP_FREQUENCY) ? " above 0" : "") + ", got " + value);
+                        }
+                    }
+                }
+                default -> throw new IllegalArgumentException("Can't sweep " + name + ", only "
+                        + PATCH_LIKELIHOOD + ", " + BACKUP_FREQUENCY + ", " + RTO + " and " + RPO);
+            }
+            parameters.put(name, parsed);
+        }
+        return parameters;
+    }
+
+    public static int[] to_ints(double[] values) {
+        return Arrays.stream(values).mapToInt(value -> (int) value).toArray();
+    }
+
+    // Every patch likelihood and simulation is one task, so all of them are spread over the cores together
+    public void run(int number_of_simulations, boolean parallel) {
+        int number_of_tasks = patch_likelihoods.length * number_of_simulations;
+        if (!parallel) {
+            summaries = create_summaries();
+            for (int task = 0; task < number_of_tasks; task++) {
+                run_task(task, number_of_simulations, summaries);
+            }
+            return;
+        }
+        summaries = MonteCarlo.run_on_pool(() -> IntStream.range(0, number_of_tasks)
+                .parallel()
+                .collect(this::create_summaries,
+                        (worker, task) -> run_task(task, number_of_simulations, worker),
+                        (worker, other) -> {
+                            for (int i = 0; i < worker.length; i++) {
+                                worker[i].merge(other[i]);
+                            }
+                        }));
+    }
+
+    private SweepSummary[] create_summaries() {
+        SweepSummary[] created = new SweepSummary[patch_likelihoods.length];
+        for (int i = 0; i < created.length; i++) {
+            created[i] = new SweepSummary(graph.size(), backup_frequencies);
+        }
+        return created;
+    }
+
+    private void run_task(int task, int number_of_simulations, SweepSummary[] worker) {
+        int patch_index = task / number_of_simulations;
+        monte_carlos[patch_index].run_simulation(task % number_of_simulations, worker[patch_index]);
+    }
+
+    public BlockGraph get_graph() {
+        return graph;
+    }
+
+    public double[] get_patch_likelihoods() {
+        return patch_likelihoods;
+    }
+
+    public int[] get_backup_frequencies() {
+        return backup_frequencies;
+    }
+
+    public int[] get_rtos() {
+        return rtos;
+    }
+
+    public int[] get_rpos() {
+        return rpos;
+    }
+
+    public long get_simulations() {
+        return summaries[0].days_compromised[0].count();
+    }
+
+    // Simulations of the patch likelihood in which the block was compromised for fewer than rto days
+    public long get_rto_passed(int patch_index, int block, int rto) {
+        return summaries[patch_index].days_compromised[block].count_below(rto);
+    }
+
+    // Simulations of the patch likelihood in which the block lost fewer than rpo days of data,
+    // with backups every backup_frequencies[backup_index] days
+    public long get_rpo_passed(int patch_index, int backup_index, int block, int rpo) {
+        return summaries[patch_index].days_data_lost[block].get_simulations_rpo_passed(backup_index, rpo);
+    }
+
+    // Days compromised as in StreamingBlockSummary, with days of data lost for several backup frequencies at once
+    private static class SweepSummary implements SimulationObserver {
+
+        private final IntHistogram[] days_compromised;
+        private final DataLostByBackupFrequency[] days_data_lost;
+        // The simulation in progress
+        private final int[] current_days_compromised;
+        private long[] previous_day;
+
+        SweepSummary(int number_of_blocks, int[] backup_frequencies) {
+            this.days_compromised = new IntHistogram[number_of_blocks];
+            this.days_data_lost = new DataLostByBackupFrequency[number_of_blocks];
+            for (int block = 0; block < number_of_blocks; block++) {
+                days_compromised[block] = new IntHistogram();
+                days_data_lost[block] = new DataLostByBackupFrequency(backup_frequencies);
+            }
+            this.current_days_compromised = new int[number_of_blocks];
+            this.previous_day = BitSets.create(number_of_blocks);
+        }
+
+        @Override
+        public void start_simulation(int simulation) {
+            Arrays.fill(current_days_compromised, 0);
+            Arrays.fill(previous_day, 0);
+        }
+
+        @Override
+        public void end_of_day(int day, long[] compromised, int compromised_blocks, int in_scope_blocks) {
+            for (int word = 0; word < compromised.length; word++) {
+                long bits = compromised[word];
+                long outage_starts = bits & ~previous_day[word];
+                previous_day[word] = bits;
+
+                while (bits != 0) {
+                    int block = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    ++current_days_compromised[block];
+                }
+                while (outage_starts != 0) {
+                    int block = (word << 6) + Long.numberOfTrailingZeros(outage_starts);
+                    outage_starts &= outage_starts - 1;
+                    days_data_lost[block].add_outage_start(day);
+                }
+            }
+        }
+
+        @Override
+        public void end_simulation(int simulation) {
+            for (int block = 0; block < days_compromised.length; block++) {
+                days_compromised[block].add(current_days_compromised[block]);
+                days_data_lost[block].end_simulation();
+            }
+        }
+
+        void merge(SweepSummary other) {
+            for (int block = 0; block < days_compromised.length; block++) {
+                days_compromised[block].merge(other.days_compromised[block]);
+                days_data_lost[block].merge(other.days_data_lost[block]);
+            }
+        }
+    }
+
+    // Test client, checks a small sweep against separate runs of every grid point
+    // Usage: ParameterSweep [simulations]
+    public static void main(String[] args) {
+        int number_of_simulations = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int days = 300;
+
+        BlockGraph.Builder builder = new BlockGraph.Builder();
+        for (int block = 0; block < 20; block++) {
+            builder.add_block("Block " + block, 0.1);
+            if (block > 0) {
+                builder.add_edge(block - 1, block);
+            }
+        }
+        builder.add_starting_block(0);
+        BlockGraph graph = builder.build();
+
+        LinkedHashMap<String, double[]> spec = parse("patch_likelihood=0.3,0.5; backup_frequency=7:14:7; "
+                + "rto=5:30:5; rpo=10,20");
+        ParameterSweep sweep = new ParameterSweep(graph, days, "normal", 100, 42, MonteCarlo.DAILY,
+                spec.get(PATCH_LIKELIHOOD), to_ints(spec.get(BACKUP_FREQUENCY)), to_ints(spec.get(RTO)),
+                to_ints(spec.get(RPO)));
+        long start = System.nanoTime();
+        sweep.run(number_of_simulations, true);
+        double sweep_elapsed = (System.nanoTime() - start) / 1e6;
+
+        int grid_points = 0;
+        int mismatches = 0;
+        start = System.nanoTime();
+        for (int p = 0; p < sweep.patch_likelihoods.length; p++) {
+            MonteCarlo monte_carlo = new MonteCarlo(graph, days, "normal", sweep.patch_likelihoods[p], 100, 42);
+            for (int b = 0; b < sweep.backup_frequencies.length; b++) {
+                for (int rto : sweep.rtos) {
+                    for (int rpo : sweep.rpos) {
+                        ++grid_points;
+                        HashMap<String, SimulationBlockSummary> results = monte_carlo.run_summary_only(number_of_simulations, false, rto, rpo,
+                                sweep.backup_frequencies[b]);
+                        for (int block = 0; block < graph.size(); block++) {
+                            SimulationBlockSummary block_summary = results.get(graph.get_block_name(block));
+                            if (block_summary.get_simulations_rto_passed() != sweep.get_rto_passed(p, block, rto)
+                                    || block_summary.get_simulations_rpo_passed()
+                                    != sweep.get_rpo_passed(p, b, block, rpo)) {
+                                ++mismatches;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        System.out.printf("%d grid points: sweep %.1f ms, separate runs %.1f ms, %d mismatched blocks%n",
+                grid_points, sweep_elapsed, (System.nanoTime() - start) / 1e6, mismatches);
+    }
+}
@@ -0,0 +1,92 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation;
+
+// DaySweep one block at a time, used when the Vector API isn't available
+final class ScalarDaySweep extends DaySweep {
+
+    ScalarDaySweep(long[] pwned_thresholds, long patch_threshold) {
+        super(pwned_thresholds, patch_threshold);
+    }
+
+    @Override
+    void step(long[] compromised, long[] in_scope, long[] state) {
+        for (int word = 0; word < compromised.length; word++) {
+            // Compromised blocks are in-scope, so nothing can change here, and no randoms are drawn
+            if (in_scope[word] == 0) {
+                continue;
+            }
+            long missed_attacks = 0;
+            long missed_patches = 0;
+            int first_block = word << 6;
+            for (int lane = 0; lane < 64; lane += STREAMS) {
+                // (random >>> 1) <= threshold unless threshold - (random >>> 1) is negative
+                for (int stream = 0; stream < STREAMS; stream++) {
+                    long random = next(state, stream) >>> 1;
+                    missed_attacks |= ((pwned_thresholds[first_block + lane + stream] - random) >>> 63) << (lane + stream);
+                }
+                for (int stream = 0; stream < STREAMS; stream++) {
+                    long random = next(state, stream) >>> 1;
+                    missed_patches |= ((patch_threshold - random) >>> 63) << (lane + stream);
+                }
+            }
+            long attacks = ~missed_attacks;
+            long patches = ~missed_patches;
+            long targets = in_scope[word] & ~compromised[word];
+            compromised[word] = (compromised[word] | (attacks & targets)) & ~patches;
+        }
+    }
+
+    @Override
+    boolean is_vectorized() {
+        return false;
+    }
+
+    // xoshiro256++ on one of the four streams, same as Xoshiro256PlusPlus.nextLong()
+    private static long next(long[] state, int stream) {
+        long s0 = state[stream];
+        long s1 = state[STREAMS + stream];
+        long s2 = state[2 * STREAMS + stream];
+        long s3 = state[3 * STREAMS + stream];
+        long result = Long.rotateLeft(s0 + s3, 23) + s0;
+        long t = s1 << 17;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+        state[stream] = s0;
+        state[STREAMS + stream] = s1;
+        state[2 * STREAMS + stream] = s2;
+        state[3 * STREAMS + stream] = s3;
+        return result;
+    }
+}
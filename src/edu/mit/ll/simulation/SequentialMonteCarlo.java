@@ -0,0 +1,125 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation;
+
+import edu.mit.ll.simulation_results.SimulationBlockSummary;
+import edu.mit.ll.simulation_results.SimulationOverallSummary;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Sequential mode: instead of a fixed number of simulations, runs them in batches until every block's
+// RTO and RPO pass rates and average days compromised are known to within a 95% confidence half-width,
+// or max_simulations have run.
+// Pass rates are fractions of the simulations and days compromised is checked as a fraction of the days,
+// so the one 'precision' applies to all three.
+// The simulations run are the first ones a fixed run would do, the run just stops earlier.
+public class SequentialMonteCarlo {
+
+    // A multiple of 64, so the bit-sliced engine batches simulations the same way as a single run
+    public static final int BATCH_SIZE = 256;
+
+    private final MonteCarlo monte_carlo;
+    private final int max_simulations;
+    private final double precision;
+
+    public SequentialMonteCarlo(MonteCarlo monte_carlo, int max_simulations, double precision) {
+        this.monte_carlo = monte_carlo;
+        this.max_simulations = max_simulations;
+        this.precision = precision;
+    }
+
+    public HashMap<String, SimulationBlockSummary> run_summary_only(boolean parallel, int rto, int rpo,
+                                                                    int backup_frequency) {
+        if (parallel) {
+            // One pool for all the batches, each batch's parallel stream runs on it
+            return MonteCarlo.run_on_pool(() -> run_batches_summary_only(true, rto, rpo, backup_frequency));
+        }
+        return run_batches_summary_only(false, rto, rpo, backup_frequency);
+    }
+
+    private HashMap<String, SimulationBlockSummary> run_batches_summary_only(boolean parallel, int rto, int rpo,
+                                                                             int backup_frequency) {
+        StreamingBlockSummary summary = new StreamingBlockSummary(monte_carlo.get_graph(), rto, rpo, backup_frequency);
+        int simulations = 0;
+        while (simulations < max_simulations) {
+            int batch = Math.min(BATCH_SIZE, max_simulations - simulations);
+            monte_carlo.run_summary_only(simulations, batch, parallel, summary);
+            simulations += batch;
+            if (get_half_width(summary.get_block_summaries(), monte_carlo.get_days()) <= precision) {
+                break;
+            }
+        }
+        return summary.get_block_summaries();
+    }
+
+    public List<SimulationOverallSummary> run(boolean parallel, int rto, int rpo, int backup_frequency) {
+        if (parallel) {
+            return MonteCarlo.run_on_pool(() -> run_batches(true, rto, rpo, backup_frequency));
+        }
+        return run_batches(false, rto, rpo, backup_frequency);
+    }
+
+    private List<SimulationOverallSummary> run_batches(boolean parallel, int rto, int rpo, int backup_frequency) {
+        List<SimulationOverallSummary> simulation_results = new ArrayList<>();
+        HashMap<String, SimulationBlockSummary> block_summaries = new HashMap<>();
+        BlockGraph graph = monte_carlo.get_graph();
+        for (int block = 0; block < graph.size(); block++) {
+            block_summaries.put(graph.get_block_name(block), new SimulationBlockSummary(rto, rpo, false));
+        }
+
+        while (simulation_results.size() < max_simulations) {
+            int batch = Math.min(BATCH_SIZE, max_simulations - simulation_results.size());
+            for (SimulationOverallSummary simulation : monte_carlo.run(simulation_results.size(), batch, parallel)) {
+                for (Map.Entry<String, SimulationBlockSummary> block : block_summaries.entrySet()) {
+                    block.getValue().add_timeline(simulation.get_block_status(block.getKey()), backup_frequency);
+                }
+                simulation_results.add(simulation);
+            }
+            if (get_half_width(block_summaries, monte_carlo.get_days()) <= precision) {
+                break;
+            }
+        }
+        return simulation_results;
+    }
+
+    // The widest 95% confidence half-width over all blocks and estimates, days compromised as a fraction of days
+    public static double get_half_width(Map<String, SimulationBlockSummary> block_summaries, int days) {
+        double half_width = 0.0;
+        for (SimulationBlockSummary block_summary : block_summaries.values()) {
+            half_width = Math.max(half_width, block_summary.get_rto_passed_half_width());
+            half_width = Math.max(half_width, block_summary.get_rpo_passed_half_width());
+            half_width = Math.max(half_width, block_summary.get_days_compromised_half_width() / days);
+        }
+        return half_width;
+    }
+}
@@ -0,0 +1,200 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation;
+
+import edu.mit.ll.simulation_results.DailyPercentileEnvelope;
+import edu.mit.ll.simulation_results.SimulationBlockSummary;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+// Summary-only mode: updates the per-block metrics of SimulationBlockSummary as each day completes,
+// so no timeline is ever stored and memory does not grow with the number of simulations.
+// One instance handles one simulation at a time; parallel runs use one instance per worker and merge().
+public class StreamingBlockSummary implements SimulationObserver {
+
+    private final BlockGraph graph;
+    private final int rto;
+    private final int rpo;
+    private final int backup_frequency;
+    private final SimulationBlockSummary[] block_summaries;
+
+    // Metrics of the simulation in progress, indexed by block id
+    private final int[] days_compromised;
+    private final int[] first_day_compromised;
+    private final int[] times_compromised;
+    private final int[] days_data_lost;
+    private final long[] previous_day;
+    // Likelihood ratio of the simulation in progress, NaN unless it was importance sampled, see set_weight()
+    private double weight = Double.NaN;
+    // Other simulations in flight that record into the same block summaries, see get_lanes()
+    private StreamingBlockSummary[] lanes;
+    // Per-day distribution of the compromised and in-scope counts, null unless enable_daily_envelope()
+    private DailyPercentileEnvelope daily_envelope;
+
+    public StreamingBlockSummary(BlockGraph graph, int rto, int rpo, int backup_frequency) {
+        this(graph, rto, rpo, backup_frequency, new SimulationBlockSummary[graph.size()]);
+        for (int block = 0; block < block_summaries.length; block++) {
+            block_summaries[block] = new SimulationBlockSummary(rto, rpo, false);
+        }
+    }
+
+    private StreamingBlockSummary(BlockGraph graph, int rto, int rpo, int backup_frequency,
+                                  SimulationBlockSummary[] block_summaries) {
+        this.graph = graph;
+        this.rto = rto;
+        this.rpo = rpo;
+        this.backup_frequency = backup_frequency;
+        int number_of_blocks = graph.size();
+        this.block_summaries = block_summaries;
+        this.days_compromised = new int[number_of_blocks];
+        this.first_day_compromised = new int[number_of_blocks];
+        this.times_compromised = new int[number_of_blocks];
+        this.days_data_lost = new int[number_of_blocks];
+        this.previous_day = BitSets.create(number_of_blocks);
+    }
+
+    @Override
+    public void start_simulation(int simulation) {
+        Arrays.fill(days_compromised, 0);
+        Arrays.fill(first_day_compromised, -1);
+        Arrays.fill(times_compromised, 0);
+        Arrays.fill(days_data_lost, 0);
+        Arrays.fill(previous_day, 0);
+        weight = Double.NaN;
+    }
+
+    @Override
+    public void end_of_day(int day, long[] compromised, int compromised_blocks, int in_scope_blocks) {
+        if (daily_envelope != null) {
+            daily_envelope.add_day(day, compromised_blocks, in_scope_blocks);
+        }
+        for (int word = 0; word < compromised.length; word++) {
+            long bits = compromised[word];
+            // Blocks that went from clean to compromised today start a new outage
+            long outage_starts = bits & ~previous_day[word];
+            previous_day[word] = bits;
+
+            while (bits != 0) {
+                int block = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                ++days_compromised[block];
+            }
+            while (outage_starts != 0) {
+                int block = (word << 6) + Long.numberOfTrailingZeros(outage_starts);
+                outage_starts &= outage_starts - 1;
+                if (first_day_compromised[block] < 0) {
+                    first_day_compromised[block] = day;
+                }
+                ++times_compromised[block];
+                // Same as SimulationBlockSummary.total_days_lost(), the last backup before an outage
+                // starting on 'day' was taken on the last multiple of backup_frequency
+                days_data_lost[block] += day % backup_frequency;
+            }
+        }
+    }
+
+    @Override
+    public void end_simulation(int simulation) {
+        for (int block = 0; block < block_summaries.length; block++) {
+            if (Double.isNaN(weight)) {
+                block_summaries[block].add_simulation(days_compromised[block], first_day_compromised[block],
+                        times_compromised[block], days_data_lost[block]);
+            }
+            else {
+                block_summaries[block].add_simulation(days_compromised[block], first_day_compromised[block],
+                        times_compromised[block], days_data_lost[block], weight);
+            }
+        }
+    }
+
+    // Importance sampling, the simulation in progress is recorded with this weight when it ends
+    void set_weight(double weight) {
+        this.weight = weight;
+    }
+
+    // Metrics of the last finished simulation, until the next one starts
+    int get_last_days_compromised(int block) {
+        return days_compromised[block];
+    }
+
+    int get_last_days_data_lost(int block) {
+        return days_data_lost[block];
+    }
+
+    // For engines that run several simulations at once, one observer per simulation.
+    // Lane 0 is this summary, all lanes record into the same block summaries and must be used from one thread.
+    public SimulationObserver[] get_lanes(int number_of_lanes) {
+        if (lanes == null || lanes.length < number_of_lanes) {
+            lanes = new StreamingBlockSummary[number_of_lanes];
+            lanes[0] = this;
+            for (int lane = 1; lane < number_of_lanes; lane++) {
+                lanes[lane] = new StreamingBlockSummary(graph, rto, rpo, backup_frequency, block_summaries);
+                lanes[lane].daily_envelope = daily_envelope;
+            }
+        }
+        return Arrays.copyOf(lanes, number_of_lanes, SimulationObserver[].class);
+    }
+
+    // A summary with the same settings and no simulations yet
+    public StreamingBlockSummary create_empty() {
+        StreamingBlockSummary empty = new StreamingBlockSummary(graph, rto, rpo, backup_frequency);
+        if (daily_envelope != null) {
+            empty.enable_daily_envelope(daily_envelope.get_days());
+        }
+        return empty;
+    }
+
+    public void merge(StreamingBlockSummary other) {
+        for (int block = 0; block < block_summaries.length; block++) {
+            block_summaries[block].merge(other.block_summaries[block]);
+        }
+        if (daily_envelope != null && other.daily_envelope != null) {
+            daily_envelope.merge(other.daily_envelope);
+        }
+    }
+
+    // Also keep the per-day distribution of the compromised and in-scope counts, call before any simulation
+    public void enable_daily_envelope(int days) {
+        daily_envelope = new DailyPercentileEnvelope(days);
+    }
+
+    public DailyPercentileEnvelope get_daily_envelope() {
+        return daily_envelope;
+    }
+
+    public HashMap<String, SimulationBlockSummary> get_block_summaries() {
+        HashMap<String, SimulationBlockSummary> simulation_block_data = new HashMap<>();
+        for (int block = 0; block < block_summaries.length; block++) {
+            simulation_block_data.put(graph.get_block_name(block), block_summaries[block]);
+        }
+        return simulation_block_data;
+    }
+}
@@ -0,0 +1,67 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation;
+
+import edu.mit.ll.probability.RandomSource;
+
+// Daily kernel for large models, the trials of each day are one DaySweep over all blocks,
+// on the Vector API when it is available. The results only depend on the seed, not on which DaySweep was picked.
+class SweepSimulation {
+
+    private final BlockGraph graph;
+    private final int days;
+    private final long[] starting_blocks;
+    private final DaySweep sweep;
+
+    SweepSimulation(BlockGraph graph, int days, long[] starting_blocks, DaySweep sweep) {
+        this.graph = graph;
+        this.days = days;
+        this.starting_blocks = starting_blocks;
+        this.sweep = sweep;
+    }
+
+    boolean is_vectorized() {
+        return sweep.is_vectorized();
+    }
+
+    void run(int simulation, RandomSource random, SimulationObserver observer) {
+        long[] compromised = BitSets.create(graph.size());
+        long[] in_scope = BitSets.create(graph.size());
+        long[] state = DaySweep.create_state(random);
+        observer.start_simulation(simulation);
+
+        for (int day = 0; day < days; day++) {
+            int in_scope_blocks = MonteCarlo.update_in_scope(graph, starting_blocks, compromised, in_scope);
+            sweep.step(compromised, in_scope, state);
+            observer.end_of_day(day, compromised, BitSets.cardinality(compromised), in_scope_blocks);
+        }
+        observer.end_simulation(simulation);
+    }
+}
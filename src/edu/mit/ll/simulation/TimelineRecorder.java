@@ -0,0 +1,69 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation;
+
+import edu.mit.ll.simulation_results.SimulationOverallSummary;
+
+// Keeps the full timeline of one simulation as a SimulationOverallSummary
+public class TimelineRecorder implements SimulationObserver {
+
+    private final BlockGraph graph;
+    private final SimulationOverallSummary summary;
+
+    public TimelineRecorder(BlockGraph graph, int days) {
+        this.graph = graph;
+        this.summary = new SimulationOverallSummary(days);
+        // Block columns line up with the BlockGraph block ids
+        for (int block = 0; block < graph.size(); block++) {
+            summary.add_block(graph.get_block_name(block));
+        }
+    }
+
+    @Override
+    public void start_simulation(int simulation) {
+    }
+
+    @Override
+    public void end_of_day(int day, long[] compromised, int compromised_blocks, int in_scope_blocks) {
+        for (int block = 0; block < graph.size(); block++) {
+            summary.addStatus(block, BitSets.get(compromised, block));
+        }
+        summary.add_in_scope_blocks(in_scope_blocks);
+        summary.add_number_compromised_blocks(compromised_blocks);
+    }
+
+    @Override
+    public void end_simulation(int simulation) {
+    }
+
+    public SimulationOverallSummary get_summary() {
+        return summary;
+    }
+}
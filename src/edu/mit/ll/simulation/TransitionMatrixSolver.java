@@ -0,0 +1,258 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation;
+
+import edu.mit.ll.probability.RandomSource;
+import edu.mit.ll.simulation_results.SimulationBlockSummary;
+
+import java.util.HashMap;
+
+// Expected compromise levels over long horizons for small graphs, without simulating every day.
+// The set of compromised blocks at the end of a day is a Markov chain on 2^blocks states: given yesterday's set,
+// the in-scope blocks are known and every block is compromised or patched independently, as in the daily kernel.
+// The transition matrix T is built once, then T^days and T + T^2 + ... + T^days are computed by repeated squaring,
+// so a horizon costs O(log days) matrix products instead of days steps.
+// Only graphs of up to MAX_BLOCKS blocks are solved, see can_solve(), others need Monte Carlo.
+public class TransitionMatrixSolver {
+
+    // 2^8 states, a matrix product is then 2^24 multiply-adds
+    public static final int MAX_BLOCKS = 8;
+
+    private final BlockGraph graph;
+    private final int days;
+    private final int states;
+    private final double[] transitions;
+
+    // Results of run()
+    private double[] expected_days_compromised;
+    private double[] last_day_compromised;
+    private double[] long_run_compromised;
+
+    public TransitionMatrixSolver(BlockGraph graph, int days, String distribution, double patch_probability,
+                                  int uniform_size) {
+        if (!can_solve(graph)) {
+            throw new IllegalArgumentException("Only graphs of up to " + MAX_BLOCKS + " blocks can be solved exactly");
+        }
+        this.graph = graph;
+        this.days = days;
+        this.states = 1 << graph.size();
+
+        double patch = RandomSource.eventProbability(
+                MonteCarlo.get_threshold(distribution, uniform_size, patch_probability));
+        double[] attack = new double[graph.size()];
+        int[] neighbor_masks = new int[graph.size()];
+        for (int block = 0; block < graph.size(); block++) {
+            attack[block] = RandomSource.eventProbability(
+                    MonteCarlo.get_threshold(distribution, uniform_size, graph.get_threat_likelihood(block)));
+            for (int edge = graph.neighbors_start(block); edge < graph.neighbors_end(block); edge++) {
+                neighbor_masks[block] |= 1 << graph.get_neighbor(edge);
+            }
+        }
+        int starting_mask = 0;
+        for (int block : graph.get_starting_blocks()) {
+            starting_mask |= 1 << block;
+        }
+
+        this.transitions = new double[states * states];
+        double[] compromised = new double[graph.size()];
+        for (int from = 0; from < states; from++) {
+            int in_scope = starting_mask | from;
+            for (int block = 0; block < graph.size(); block++) {
+                if ((from & (1 << block)) != 0) {
+                    in_scope |= neighbor_masks[block];
+                }
+            }
+            // Chance each block ends the day compromised, a compromised block stays so unless patched,
+            // a clean one in scope is attacked and may be patched the same day
+            for (int block = 0; block < graph.size(); block++) {
+                int mask = 1 << block;
+                if ((from & mask) != 0) {
+                    compromised[block] = 1.0 - patch;
+                }
+                else {
+                    compromised[block] = (in_scope & mask) != 0 ? attack[block] * (1.0 - patch) : 0.0;
+                }
+            }
+            // The blocks are independent, so the row is the product of their Bernoulli distributions
+            int row = from * states;
+            transitions[row] = 1.0;
+            for (int block = 0; block < graph.size(); block++) {
+                int mask = 1 << block;
+                for (int to = 0; to < mask; to++) {
+                    transitions[row + (to | mask)] = transitions[row + to] * compromised[block];
+                    transitions[row + to] *= 1.0 - compromised[block];
+                }
+            }
+        }
+    }
+
+    public static boolean can_solve(BlockGraph graph) {
+        return graph.size() <= MAX_BLOCKS;
+    }
+
+    public void run() {
+        // power = T^m and sum = T + ... + T^m, built from the highest bit of days down
+        double[] power = identity();
+        double[] sum = new double[states * states];
+        for (int bit = 31 - Integer.numberOfLeadingZeros(days); bit >= 0; bit--) {
+            // m -> 2m
+            sum = add(sum, multiply(power, sum));
+            power = multiply(power, power);
+            if ((days & (1 << bit)) != 0) {
+                // m -> m + 1
+                power = multiply(power, transitions);
+                sum = add(sum, power);
+            }
+        }
+
+        // Every simulation starts with no block compromised, state 0
+        expected_days_compromised = get_block_expectations(sum);
+        last_day_compromised = get_block_expectations(power);
+
+        // The long run level, T^(2^k) until its first row stops changing
+        double[] limit = transitions;
+        for (int squaring = 0; squaring < 64; squaring++) {
+            double[] next = multiply(limit, limit);
+            double change = 0.0;
+            for (int to = 0; to < states; to++) {
+                change = Math.max(change, Math.abs(next[to] - limit[to]));
+            }
+            limit = next;
+            if (change < 1e-12) {
+                break;
+            }
+        }
+        long_run_compromised = get_block_expectations(limit);
+    }
+
+    // Expected number of compromised blocks per block, from row 0 of a matrix of state probabilities
+    private double[] get_block_expectations(double[] matrix) {
+        double[] expectations = new double[graph.size()];
+        for (int to = 0; to < states; to++) {
+            double probability = matrix[to];
+            for (int block = 0; block < graph.size(); block++) {
+                if ((to & (1 << block)) != 0) {
+                    expectations[block] += probability;
+                }
+            }
+        }
+        return expectations;
+    }
+
+    private double[] identity() {
+        double[] identity = new double[states * states];
+        for (int state = 0; state < states; state++) {
+            identity[state * states + state] = 1.0;
+        }
+        return identity;
+    }
+
+    private double[] multiply(double[] left, double[] right) {
+        double[] product = new double[states * states];
+        for (int i = 0; i < states; i++) {
+            for (int k = 0; k < states; k++) {
+                double value = left[i * states + k];
+                if (value == 0.0) {
+                    continue;
+                }
+                for (int j = 0; j < states; j++) {
+                    product[i * states + j] += value * right[k * states + j];
+                }
+            }
+        }
+        return product;
+    }
+
+    private static double[] add(double[] left, double[] right) {
+        double[] sum = new double[left.length];
+        for (int i = 0; i < left.length; i++) {
+            sum[i] = left[i] + right[i];
+        }
+        return sum;
+    }
+
+    public BlockGraph get_graph() {
+        return graph;
+    }
+
+    // Expected days the block ends compromised over the horizon, the average days compromised of a run
+    public double get_expected_days_compromised(int block) {
+        return expected_days_compromised[block];
+    }
+
+    // Probability the block is compromised at the end of the last day
+    public double get_last_day_compromised(int block) {
+        return last_day_compromised[block];
+    }
+
+    // Fraction of days the block is compromised in the long run, no matter how the run started
+    public double get_long_run_compromised(int block) {
+        return long_run_compromised[block];
+    }
+
+    // Test client, compares expected days compromised with a Monte Carlo run over a long horizon
+    // Usage: TransitionMatrixSolver [blocks] [days] [simulations]
+    public static void main(String[] args) {
+        int number_of_blocks = args.length > 0 ? Integer.parseInt(args[0]) : MAX_BLOCKS;
+        int days = args.length > 1 ? Integer.parseInt(args[1]) : 3650;
+        int number_of_simulations = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+
+        RandomSource random = RandomSource.create(RandomSource.XOSHIRO, 42);
+        BlockGraph.Builder builder = new BlockGraph.Builder();
+        for (int block = 0; block < number_of_blocks; block++) {
+            builder.add_block("Block " + block, 0.02 + 0.02 * block);
+        }
+        for (int edge = 0; edge < 2 * number_of_blocks; edge++) {
+            builder.add_edge(random.nextInt(number_of_blocks), random.nextInt(number_of_blocks));
+        }
+        builder.add_starting_block(0);
+        BlockGraph graph = builder.build();
+
+        long start = System.nanoTime();
+        TransitionMatrixSolver solver = new TransitionMatrixSolver(graph, days, "uniform", 0.2, 1000);
+        solver.run();
+        double solver_elapsed = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        MonteCarlo monte_carlo = new MonteCarlo(graph, days, "uniform", 0.2, 1000, 42, MonteCarlo.EVENT);
+        HashMap<String, SimulationBlockSummary> results = monte_carlo.run_summary_only(number_of_simulations, false, days, days, 1);
+        double monte_carlo_elapsed = (System.nanoTime() - start) / 1e6;
+
+        System.out.printf("%d days: matrix %.1f ms, %d simulations %.1f ms%n",
+                days, solver_elapsed, number_of_simulations, monte_carlo_elapsed);
+        for (int block = 0; block < graph.size(); block++) {
+            SimulationBlockSummary block_summary = results.get(graph.get_block_name(block));
+            System.out.printf("  %s: expected days compromised %.2f matrix, %.2f +/- %.2f simulated, "
+                            + "long run %.4f%n",
+                    graph.get_block_name(block), solver.get_expected_days_compromised(block),
+                    block_summary.get_days_compromised_histogram().mean(),
+                    block_summary.get_days_compromised_half_width(), solver.get_long_run_compromised(block));
+        }
+    }
+}
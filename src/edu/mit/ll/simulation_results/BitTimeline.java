@@ -0,0 +1,92 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation_results;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+// Bit-packed cyber state of one block over the days of one simulation, bit (day % 64) of word (day / 64)
+// is set if the block was compromised that day. One bit per day instead of one Boolean reference.
+public class BitTimeline {
+
+    private long[] words;
+    private int length;
+
+    public BitTimeline() {
+        this(64);
+    }
+
+    public BitTimeline(int expected_days) {
+        this.words = new long[Math.max(1, (expected_days + 63) >>> 6)];
+    }
+
+    public void add(boolean compromised) {
+        int word = length >>> 6;
+        if (word == words.length) {
+            words = Arrays.copyOf(words, words.length * 2);
+        }
+        if (compromised) {
+            words[word] |= 1L << length;
+        }
+        ++length;
+    }
+
+    public boolean get(int day) {
+        if (day < 0 || day >= length) {
+            throw new IndexOutOfBoundsException("Day " + day + " out of " + length);
+        }
+        return (words[day >>> 6] & (1L << day)) != 0;
+    }
+
+    public int size() {
+        return length;
+    }
+
+    // Backing words, only the first size() bits are meaningful, bits past size() are always 0
+    public long[] words() {
+        return words;
+    }
+
+    // Read-only List<Boolean> view, for code that still walks timelines day by day
+    public List<Boolean> asList() {
+        return new AbstractList<>() {
+            @Override
+            public Boolean get(int day) {
+                return BitTimeline.this.get(day);
+            }
+
+            @Override
+            public int size() {
+                return length;
+            }
+        };
+    }
+}
@@ -0,0 +1,145 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation_results;
+
+import org.apache.poi.ss.usermodel.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Distribution over simulations of the compromised and in-scope block counts on every day, for a fan chart
+// instead of one line chart per simulation. Each day keeps an IntHistogram of each count, bounded by the
+// number of blocks, so memory depends on days and blocks, not on the number of simulations, see fits().
+public class DailyPercentileEnvelope {
+
+    public static final double[] PERCENTILES = { 0.05, 0.25, 0.50, 0.75, 0.95 };
+
+    // 256 MB of counts over all the envelopes filled at the same time
+    public static final long MAX_STORED_COUNTS = 1L << 25;
+
+    private IntHistogram[] compromised_blocks;
+    private IntHistogram[] in_scope_blocks;
+
+    public DailyPercentileEnvelope(int days) {
+        this.compromised_blocks = new IntHistogram[0];
+        this.in_scope_blocks = new IntHistogram[0];
+        ensure_days(days);
+    }
+
+    // Whether 'copies' envelopes, one per worker of a parallel run, fit in MAX_STORED_COUNTS
+    // Every day may need a count for every number of blocks from 0 up, for both histograms
+    public static boolean fits(int days, int number_of_blocks, int copies) {
+        return (long) copies * days * 2 * (number_of_blocks + 1) <= MAX_STORED_COUNTS;
+    }
+
+    private void ensure_days(int days) {
+        int old_days = compromised_blocks.length;
+        if (days <= old_days) {
+            return;
+        }
+        compromised_blocks = Arrays.copyOf(compromised_blocks, days);
+        in_scope_blocks = Arrays.copyOf(in_scope_blocks, days);
+        for (int day = old_days; day < days; day++) {
+            compromised_blocks[day] = new IntHistogram();
+            in_scope_blocks[day] = new IntHistogram();
+        }
+    }
+
+    // Counts at the end of 'day' of one simulation
+    public void add_day(int day, int compromised, int in_scope) {
+        ensure_days(day + 1);
+        compromised_blocks[day].add(compromised);
+        in_scope_blocks[day].add(in_scope);
+    }
+
+    // All days of a simulation whose daily counts were kept
+    public void add_simulation(SimulationOverallSummary simulation) {
+        List<Integer> compromised = simulation.getTotal_compromised_blocks();
+        List<Integer> in_scope = simulation.getTotal_in_scope_blocks();
+        for (int day = 0; day < compromised.size(); day++) {
+            add_day(day, compromised.get(day), in_scope.get(day));
+        }
+    }
+
+    public void merge(DailyPercentileEnvelope other) {
+        ensure_days(other.compromised_blocks.length);
+        for (int day = 0; day < other.compromised_blocks.length; day++) {
+            compromised_blocks[day].merge(other.compromised_blocks[day]);
+            in_scope_blocks[day].merge(other.in_scope_blocks[day]);
+        }
+    }
+
+    public int get_days() {
+        return compromised_blocks.length;
+    }
+
+    public long get_simulations() {
+        return compromised_blocks.length == 0 ? 0 : compromised_blocks[0].count();
+    }
+
+    public IntHistogram get_compromised_blocks(int day) {
+        return compromised_blocks[day];
+    }
+
+    public IntHistogram get_in_scope_blocks(int day) {
+        return in_scope_blocks[day];
+    }
+
+    // Day, then the percentiles and mean of the compromised blocks, then the same for the in-scope blocks
+    public void toExcelSheet(Workbook workbook) {
+        Sheet sheet = workbook.createSheet("Daily Envelope");
+        Row headerRow = sheet.createRow(0);
+        headerRow.createCell(0).setCellValue("Day");
+        String[] metrics = { "Compromised Blocks", "In-Scope Blocks" };
+        int column = 1;
+        for (String metric : metrics) {
+            for (double percentile : PERCENTILES) {
+                headerRow.createCell(column++).setCellValue(metric + " P" + Math.round(percentile * 100));
+            }
+            headerRow.createCell(column++).setCellValue(metric + " Mean");
+        }
+
+        for (int day = 0; day < get_days(); day++) {
+            Row row = sheet.createRow(day + 1);
+            // Day 1 corresponds to index 0, as in the line charts
+            row.createCell(0).setCellValue(day + 1);
+            column = 1;
+            for (IntHistogram histogram : new IntHistogram[] { compromised_blocks[day], in_scope_blocks[day] }) {
+                for (double percentile : PERCENTILES) {
+                    Cell cell = row.createCell(column++);
+                    if (histogram.count() > 0) {
+                        cell.setCellValue(histogram.quantile(percentile));
+                    }
+                }
+                row.createCell(column++).setCellValue(histogram.mean());
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation_results;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.*;
+
+import java.util.List;
+
+// Days of data lost by one block under several backup frequencies at once.
+// An outage starting on 'day' loses day % backup_frequency days, see SimulationBlockSummary.total_days_lost(),
+// so only the outage start days are needed and every backup frequency is scored in one pass over them.
+// RPO pass counts for any frequency and threshold are then read off one histogram per frequency.
+public class DataLostByBackupFrequency {
+
+    private final int[] backup_frequencies;
+    private final IntHistogram[] days_data_lost;
+    // The simulation in progress
+    private final int[] current_days_data_lost;
+
+    public DataLostByBackupFrequency(int[] backup_frequencies) {
+        this.backup_frequencies = backup_frequencies;
+        this.days_data_lost = new IntHistogram[backup_frequencies.length];
+        for (int i = 0; i < backup_frequencies.length; i++) {
+            days_data_lost[i] = new IntHistogram();
+        }
+        this.current_days_data_lost = new int[backup_frequencies.length];
+    }
+
+    // Every backup frequency from 1 to max_backup_frequency
+    public static int[] up_to(int max_backup_frequency) {
+        int[] backup_frequencies = new int[max_backup_frequency];
+        for (int i = 0; i < max_backup_frequency; i++) {
+            backup_frequencies[i] = i + 1;
+        }
+        return backup_frequencies;
+    }
+
+    // For the simulation in progress, the block went from clean to compromised on 'day'
+    public void add_outage_start(int day) {
+        for (int i = 0; i < backup_frequencies.length; i++) {
+            current_days_data_lost[i] += day % backup_frequencies[i];
+        }
+    }
+
+    // Records the simulation in progress and starts the next one
+    public void end_simulation() {
+        for (int i = 0; i < backup_frequencies.length; i++) {
+            days_data_lost[i].add(current_days_data_lost[i]);
+            current_days_data_lost[i] = 0;
+        }
+    }
+
+    // Record one simulation from the block's timeline, which is only scanned once for all frequencies
+    public void add_timeline(List<Boolean> is_compromised) {
+        boolean previous_state = false;
+        int day = 0;
+        for (Boolean status : is_compromised) {
+            if (status && !previous_state) {
+                add_outage_start(day);
+            }
+            previous_state = status;
+            ++day;
+        }
+        end_simulation();
+    }
+
+    // Same as add_timeline(List), finding the outage starts 64 days at a time from the rising edges of the words
+    public void add_timeline(BitTimeline timeline) {
+        long[] words = timeline.words();
+        int number_of_words = (timeline.size() + 63) >>> 6;
+        long carry = 0;
+        for (int word = 0; word < number_of_words; word++) {
+            long bits = words[word];
+            long outage_starts = bits & ~((bits << 1) | carry);
+            carry = bits >>> 63;
+            while (outage_starts != 0) {
+                add_outage_start((word << 6) + Long.numberOfTrailingZeros(outage_starts));
+                outage_starts &= outage_starts - 1;
+            }
+        }
+        end_simulation();
+    }
+
+    public void merge(DataLostByBackupFrequency other) {
+        for (int i = 0; i < backup_frequencies.length; i++) {
+            days_data_lost[i].merge(other.days_data_lost[i]);
+        }
+    }
+
+    public int[] get_backup_frequencies() {
+        return backup_frequencies;
+    }
+
+    public long get_simulations() {
+        return days_data_lost.length == 0 ? 0 : days_data_lost[0].count();
+    }
+
+    // Simulations that lost fewer than 'rpo' days of data with backups every backup_frequencies[index] days
+    public long get_simulations_rpo_passed(int index, int rpo) {
+        return days_data_lost[index].count_below(rpo);
+    }
+
+    public IntHistogram get_days_data_lost_histogram(int index) {
+        return days_data_lost[index];
+    }
+
+    // The block name, then one row per backup frequency and one column per RPO, from 0 up to where every frequency passes
+    public void toExcelSheet(Workbook workbook, String block_name) {
+        // Block names often only differ after the 31 characters a sheet name can have
+        Sheet sheet = WorkbookSheets.create_unique_sheet(workbook, block_name);
+        // The full block name, in case the sheet name had to be cut
+        Row nameRow = sheet.createRow(0);
+        nameRow.createCell(0).setCellValue("Block Name");
+        nameRow.createCell(1).setCellValue(block_name);
+        int max_rpo = 0;
+        if (get_simulations() > 0) {
+            for (IntHistogram histogram : days_data_lost) {
+                max_rpo = Math.max(max_rpo, histogram.max() + 1);
+            }
+        }
+        max_rpo = Math.min(max_rpo, SpreadsheetVersion.EXCEL2007.getLastColumnIndex() - 1);
+
+        Row headerRow = sheet.createRow(1);
+        headerRow.createCell(0).setCellValue("Backup Frequency \\ RPO");
+        for (int rpo = 0; rpo <= max_rpo; rpo++) {
+            headerRow.createCell(rpo + 1).setCellValue(rpo);
+        }
+        double simulations = get_simulations();
+        for (int i = 0; i < backup_frequencies.length; i++) {
+            Row row = sheet.createRow(i + 2);
+            row.createCell(0).setCellValue(backup_frequencies[i]);
+            for (int rpo = 0; rpo <= max_rpo; rpo++) {
+                row.createCell(rpo + 1).setCellValue(get_simulations_rpo_passed(i, rpo) / simulations);
+            }
+        }
+    }
+}
@@ -0,0 +1,247 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation_results;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+// Exact histogram of non-negative integer samples, e.g. days compromised in each simulation.
+// The metrics are bounded by the number of days, so memory depends on days, not on the number of simulations.
+// Negative samples (first day compromised is -1 if it never happened) are only counted as missing.
+// Works as an exact quantile sketch: histograms of different workers merge(), and to_bytes() only writes
+// the range of values that occurred, so they can be sent or stored instead of the samples.
+public class IntHistogram {
+
+    private long[] counts;
+    private long total = 0;
+    private long missing = 0;
+    private long sum = 0;
+    private long sum_of_squares = 0;
+    // below[value] is the number of samples below 'value', built on the first count_below() after a change
+    // Filled before it is published, so concurrent readers of a histogram that is no longer changing
+    // see either null or the complete array
+    private volatile long[] below = null;
+
+    public IntHistogram() {
+        this(64);
+    }
+
+    public IntHistogram(int expected_max_value) {
+        this.counts = new long[Math.max(1, expected_max_value + 1)];
+    }
+
+    public void add(int value) {
+        if (value < 0) {
+            ++missing;
+            return;
+        }
+        if (value >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(value + 1, counts.length * 2));
+        }
+        ++counts[value];
+        if (below != null) {
+            below = null;
+        }
+        ++total;
+        sum += value;
+        sum_of_squares += (long) value * value;
+    }
+
+    public void merge(IntHistogram other) {
+        if (other.counts.length > counts.length) {
+            counts = Arrays.copyOf(counts, other.counts.length);
+        }
+        for (int value = 0; value < other.counts.length; value++) {
+            counts[value] += other.counts[value];
+        }
+        if (below != null) {
+            below = null;
+        }
+        total += other.total;
+        missing += other.missing;
+        sum += other.sum;
+        sum_of_squares += other.sum_of_squares;
+    }
+
+    // Number of non-negative samples
+    public long count() {
+        return total;
+    }
+
+    public long get_missing() {
+        return missing;
+    }
+
+    public long get_count(int value) {
+        return value >= 0 && value < counts.length ? counts[value] : 0;
+    }
+
+    // Number of non-negative samples below 'value', e.g. the simulations passing an RTO of 'value'
+    // O(1) once the cumulative counts are built, so every threshold can be tried on one run
+    public long count_below(int value) {
+        if (value <= 0) {
+            return 0;
+        }
+        if (value >= counts.length) {
+            return total;
+        }
+        long[] cumulative = below;
+        if (cumulative == null) {
+            cumulative = new long[counts.length];
+            for (int i = 1; i < counts.length; i++) {
+                cumulative[i] = cumulative[i - 1] + counts[i - 1];
+            }
+            below = cumulative;
+        }
+        return cumulative[value];
+    }
+
+    // Largest value that can be stored without growing
+    public int max_value() {
+        return counts.length - 1;
+    }
+
+    public double mean() {
+        return total == 0 ? 0.0 : (double) sum / total;
+    }
+
+    // Sample variance, 0 with less than two samples
+    public double variance() {
+        if (total < 2) {
+            return 0.0;
+        }
+        double mean = mean();
+        return Math.max(0.0, ((double) sum_of_squares - total * mean * mean) / (total - 1));
+    }
+
+    // Value at position 'rank' (0-based) if all samples were sorted ascending
+    // Binary search over the cumulative counts, so quartiles of many blocks don't each scan the whole range
+    public int value_at(long rank) {
+        if (rank < 0 || rank >= total) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " out of " + total);
+        }
+        // The largest value with fewer than rank + 1 samples below it
+        int low = 0;
+        int high = counts.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (count_below(middle) <= rank) {
+                low = middle;
+            }
+            else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    // Median of the sorted samples with ranks from start (inclusive) to end (exclusive),
+    // e.g. median(0, count()) is the median and median(0, count() / 2) the lower half's median for Q1
+    public double median(long start, long end) {
+        long length = end - start;
+        if (length % 2 == 0) {
+            return (value_at(start + length / 2 - 1) + value_at(start + length / 2)) / 2.0;
+        }
+        return value_at(start + length / 2);
+    }
+
+    // Nearest-rank quantile, the smallest value with at least 'fraction' of the samples at or below it
+    public int quantile(double fraction) {
+        long rank = (long) Math.ceil(fraction * total) - 1;
+        return value_at(Math.max(0, Math.min(total - 1, rank)));
+    }
+
+    public int min() {
+        return value_at(0);
+    }
+
+    public int max() {
+        return value_at(total - 1);
+    }
+
+    // Compact form for sending to or storing from another worker, counts of the values between the smallest
+    // and largest sample as variable-length integers, so a few bytes per value that occurred
+    public byte[] to_bytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int lowest = 0;
+        int highest = -1;
+        if (total > 0) {
+            lowest = min();
+            highest = max();
+        }
+        write_varint(bytes, lowest);
+        write_varint(bytes, highest + 1 - lowest);
+        for (int value = lowest; value <= highest; value++) {
+            write_varint(bytes, counts[value]);
+        }
+        write_varint(bytes, missing);
+        return bytes.toByteArray();
+    }
+
+    public static IntHistogram from_bytes(byte[] serialized) {
+        ByteArrayInputStream bytes = new ByteArrayInputStream(serialized);
+        int lowest = (int) read_varint(bytes);
+        int number_of_values = (int) read_varint(bytes);
+        IntHistogram histogram = new IntHistogram(lowest + number_of_values - 1);
+        for (int value = lowest; value < lowest + number_of_values; value++) {
+            long count = read_varint(bytes);
+            histogram.counts[value] = count;
+            histogram.total += count;
+            histogram.sum += count * value;
+            histogram.sum_of_squares += count * value * value;
+        }
+        histogram.missing = read_varint(bytes);
+        return histogram;
+    }
+
+    private static void write_varint(ByteArrayOutputStream bytes, long value) {
+        while ((value & ~0x7FL) != 0) {
+            bytes.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        bytes.write((int) value);
+    }
+
+    private static long read_varint(ByteArrayInputStream bytes) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int next = bytes.read();
+            if (next < 0) {
+                throw new IllegalArgumentException("Serialized histogram ends early");
+            }
+            value |= (long) (next & 0x7F) << shift;
+            if ((next & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Serialized histogram has a malformed count");
+    }
+}
@@ -0,0 +1,170 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation_results;
+
+import org.apache.poi.ss.usermodel.*;
+
+import java.util.Map;
+
+// Difference between an alternative weight set and the baseline for every block.
+// Both were simulated with common random numbers, so every simulation gives one paired difference per block,
+// and the confidence interval is on those differences, which vary much less than two independent runs would.
+public class PairedComparison {
+
+    public static final int RTO_PASSED = 0;
+    public static final int RPO_PASSED = 1;
+    public static final int DAYS_COMPROMISED = 2;
+    private static final int METRICS = 3;
+    private static final double Z_95 = 1.96;
+
+    private final String name;
+    private final String[] block_names;
+    private long simulations = 0;
+    // Indexed by block * METRICS + metric, differences are integers so the sums are exact
+    private final long[] sum;
+    private final long[] sum_of_squares;
+
+    private Map<String, SimulationBlockSummary> baseline;
+    private Map<String, SimulationBlockSummary> alternative;
+
+    public PairedComparison(String name, String[] block_names) {
+        this.name = name;
+        this.block_names = block_names;
+        this.sum = new long[block_names.length * METRICS];
+        this.sum_of_squares = new long[block_names.length * METRICS];
+    }
+
+    // Differences are alternative - baseline, pass/fail counts as 1/0
+    public void add_simulation(int[] rto_passed_difference, int[] rpo_passed_difference, int[] days_compromised_difference) {
+        for (int block = 0; block < block_names.length; block++) {
+            add(block, RTO_PASSED, rto_passed_difference[block]);
+            add(block, RPO_PASSED, rpo_passed_difference[block]);
+            add(block, DAYS_COMPROMISED, days_compromised_difference[block]);
+        }
+        ++simulations;
+    }
+
+    private void add(int block, int metric, int difference) {
+        sum[block * METRICS + metric] += difference;
+        sum_of_squares[block * METRICS + metric] += (long) difference * difference;
+    }
+
+    public void merge(PairedComparison other) {
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] += other.sum[i];
+            sum_of_squares[i] += other.sum_of_squares[i];
+        }
+        simulations += other.simulations;
+    }
+
+    public void set_block_summaries(Map<String, SimulationBlockSummary> baseline,
+                                    Map<String, SimulationBlockSummary> alternative) {
+        this.baseline = baseline;
+        this.alternative = alternative;
+    }
+
+    public String get_name() {
+        return name;
+    }
+
+    public long get_simulations() {
+        return simulations;
+    }
+
+    // Average of alternative - baseline, a pass rate difference for RTO_PASSED and RPO_PASSED
+    public double get_mean_difference(int block, int metric) {
+        return simulations == 0 ? 0.0 : (double) sum[block * METRICS + metric] / simulations;
+    }
+
+    // 95% confidence half-width of get_mean_difference(), infinite until there are two simulations
+    public double get_half_width(int block, int metric) {
+        if (simulations < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double mean = get_mean_difference(block, metric);
+        double variance = ((double) sum_of_squares[block * METRICS + metric] - simulations * mean * mean)
+                / (simulations - 1);
+        return Z_95 * Math.sqrt(Math.max(0.0, variance) / simulations);
+    }
+
+    // The half-width get_half_width() would have if the baseline and alternative had been run independently,
+    // the variance of the difference is then the sum of their variances
+    public double get_independent_half_width(int block, int metric) {
+        SimulationBlockSummary before = baseline.get(block_names[block]);
+        SimulationBlockSummary after = alternative.get(block_names[block]);
+        return Z_95 * Math.sqrt((variance(before, metric) + variance(after, metric)) / simulations);
+    }
+
+    private static double variance(SimulationBlockSummary block_summary, int metric) {
+        if (metric == DAYS_COMPROMISED) {
+            return block_summary.get_days_compromised_histogram().variance();
+        }
+        int passed = metric == RTO_PASSED
+                ? block_summary.get_simulations_rto_passed()
+                : block_summary.get_simulations_rpo_passed();
+        double pass_rate = (double) passed / block_summary.get_simulations();
+        return pass_rate * (1.0 - pass_rate);
+    }
+
+    // One row per block, baseline and alternative results with the paired difference
+    public void toExcelSheet(Workbook workbook) {
+        Sheet sheet = WorkbookSheets.create_unique_sheet(workbook, name);
+        String[] headers = {
+                "Block Name",
+                "Baseline RTO Pass Rate", "Alternative RTO Pass Rate", "RTO Pass Rate Difference", "+/-",
+                "Baseline RPO Pass Rate", "Alternative RPO Pass Rate", "RPO Pass Rate Difference", "+/-",
+                "Baseline Average Days Compromised", "Alternative Average Days Compromised",
+                "Days Compromised Difference", "+/-"
+        };
+        Row headerRow = sheet.createRow(0);
+        for (int column = 0; column < headers.length; column++) {
+            headerRow.createCell(column).setCellValue(headers[column]);
+        }
+
+        for (int block = 0; block < block_names.length; block++) {
+            SimulationBlockSummary before = baseline.get(block_names[block]);
+            SimulationBlockSummary after = alternative.get(block_names[block]);
+            Row row = sheet.createRow(block + 1);
+            row.createCell(0).setCellValue(block_names[block]);
+            row.createCell(1).setCellValue((double) before.get_simulations_rto_passed() / before.get_simulations());
+            row.createCell(2).setCellValue((double) after.get_simulations_rto_passed() / after.get_simulations());
+            row.createCell(3).setCellValue(get_mean_difference(block, RTO_PASSED));
+            row.createCell(4).setCellValue(get_half_width(block, RTO_PASSED));
+            row.createCell(5).setCellValue((double) before.get_simulations_rpo_passed() / before.get_simulations());
+            row.createCell(6).setCellValue((double) after.get_simulations_rpo_passed() / after.get_simulations());
+            row.createCell(7).setCellValue(get_mean_difference(block, RPO_PASSED));
+            row.createCell(8).setCellValue(get_half_width(block, RPO_PASSED));
+            row.createCell(9).setCellValue(before.get_days_compromised_histogram().mean());
+            row.createCell(10).setCellValue(after.get_days_compromised_histogram().mean());
+            row.createCell(11).setCellValue(get_mean_difference(block, DAYS_COMPROMISED));
+            row.createCell(12).setCellValue(get_half_width(block, DAYS_COMPROMISED));
+        }
+    }
+}
@@ -31,12 +31,13 @@ package edu.mit.ll.simulation_results;
 
 import org.apache.poi.ss.usermodel.*;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
 // I want this class to track general results of a specific block over all simulations
 // This will be exported to one worksheet for each block in the final workbook
+// Every metric is also kept in an IntHistogram, with keep_results = false only the histograms are kept,
+// so memory stays the same no matter how many simulations are run
 public class SimulationBlockSummary {
 
     double min;
@@ -46,20 +47,174 @@ public class SimulationBlockSummary {
     double max;
     public double average;
 
-    private final List<Integer> total_days_compromised = new ArrayList<>();
-    private final List<Integer> first_day_compromised = new ArrayList<>();
-    private final List<Integer> times_compromised = new ArrayList<>();
-    private final List<Integer> days_data_lost = new ArrayList<>();
+    // Per-simulation values as primitive ints, only kept with keep_results
+    private final IntColumn total_days_compromised = new IntColumn();
+    private final IntColumn first_day_compromised = new IntColumn();
+    private final IntColumn times_compromised = new IntColumn();
+    private final IntColumn days_data_lost = new IntColumn();
 
+    private final IntHistogram days_compromised_histogram = new IntHistogram();
+    private final IntHistogram first_day_compromised_histogram = new IntHistogram();
+    private final IntHistogram times_compromised_histogram = new IntHistogram();
+    private final IntHistogram days_data_lost_histogram = new IntHistogram();
+
+    private static final double Z_95 = 1.96;
     private int simulations_rto_passed = 0;
     private int simulations_rpo_passed = 0;
+    // Importance sampling, simulations drawn with tilted probabilities count with their likelihood ratio as weight
+    // The pass counts above are then of the tilted simulations, the pass rates below are reweighted
+    private boolean weighted = false;
+    private double weight_sum = 0.0;
+    private double weight_sum_of_squares = 0.0;
+    private double rto_failed_weight = 0.0;
+    private double rto_failed_weight_squared = 0.0;
+    private double rpo_failed_weight = 0.0;
+    private double rpo_failed_weight_squared = 0.0;
+    // The exact engine, pass probabilities with no sampling error, NaN unless set_exact_pass_rates()
+    private double exact_rto_pass_rate = Double.NaN;
+    private double exact_rpo_pass_rate = Double.NaN;
 
     private final int rto;
     private final int rpo;
+    private final boolean keep_results;
 
     public SimulationBlockSummary(int rto, int rpo) {
+        this(rto, rpo, true);
+    }
+
+    public SimulationBlockSummary(int rto, int rpo, boolean keep_results) {
         this.rto = rto;
         this.rpo = rpo;
+        this.keep_results = keep_results;
+    }
+
+    // Record all metrics of one simulation at once, used when the timeline was never stored
+    public void add_simulation(int days_compromised, int first_day_compromised, int times_compromised, int days_data_lost) {
+        record_days_compromised(days_compromised);
+        record_first_day_compromised(first_day_compromised);
+        record_times_compromised(times_compromised);
+        record_days_data_lost(days_data_lost);
+    }
+
+    // Same as add_simulation() for an importance sampled simulation, 'weight' is the likelihood ratio of its draws
+    public void add_simulation(int days_compromised, int first_day_compromised, int times_compromised, int days_data_lost,
+                               double weight) {
+        add_simulation(days_compromised, first_day_compromised, times_compromised, days_data_lost);
+        weighted = true;
+        weight_sum += weight;
+        weight_sum_of_squares += weight * weight;
+        if (!(rto > days_compromised)) {
+            rto_failed_weight += weight;
+            rto_failed_weight_squared += weight * weight;
+        }
+        if (!(rpo > days_data_lost)) {
+            rpo_failed_weight += weight;
+            rpo_failed_weight_squared += weight * weight;
+        }
+    }
+
+    // Record all metrics of one simulation from the block's timeline
+    public void add_timeline(List<Boolean> block_states, int backup_frequency) {
+        days_compromised(block_states); // RTO
+        // You can get -1 if no first day ever occurred
+        first_day_compromised(block_states);
+        times_compromised(block_states);
+        total_days_lost(backup_frequency, block_states); // RPO
+    }
+
+    // Same as add_timeline(List) in one pass over the bit-packed words, 64 days at a time:
+    // days compromised is the popcount, the first day the trailing zeros of the first non-zero word,
+    // and outages start on the rising edges x & ~(x << 1), with the last bit of the previous word carried in
+    public void add_timeline(BitTimeline timeline, int backup_frequency) {
+        long[] words = timeline.words();
+        int number_of_words = (timeline.size() + 63) >>> 6;
+        int days_compromised = 0;
+        int first_day = -1;
+        int number_of_times_compromised = 0;
+        int total_days_of_data_lost = 0;
+        long carry = 0;
+        for (int word = 0; word < number_of_words; word++) {
+            long bits = words[word];
+            if (bits == 0) {
+                carry = 0;
+                continue;
+            }
+            days_compromised += Long.bitCount(bits);
+            if (first_day < 0) {
+                first_day = (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            long outage_starts = bits & ~((bits << 1) | carry);
+            carry = bits >>> 63;
+            number_of_times_compromised += Long.bitCount(outage_starts);
+            while (outage_starts != 0) {
+                int day = (word << 6) + Long.numberOfTrailingZeros(outage_starts);
+                outage_starts &= outage_starts - 1;
+                // Same as total_days_lost(), the last backup was on the last multiple of backup_frequency
+                total_days_of_data_lost += day % backup_frequency;
+            }
+        }
+        add_simulation(days_compromised, first_day, number_of_times_compromised, total_days_of_data_lost);
+    }
+
+    // Combine with a summary of other simulations of the same block, e.g. from another thread
+    public void merge(SimulationBlockSummary other) {
+        if (keep_results) {
+            total_days_compromised.add_all(other.total_days_compromised);
+            first_day_compromised.add_all(other.first_day_compromised);
+            times_compromised.add_all(other.times_compromised);
+            days_data_lost.add_all(other.days_data_lost);
+        }
+        days_compromised_histogram.merge(other.days_compromised_histogram);
+        first_day_compromised_histogram.merge(other.first_day_compromised_histogram);
+        times_compromised_histogram.merge(other.times_compromised_histogram);
+        days_data_lost_histogram.merge(other.days_data_lost_histogram);
+        simulations_rto_passed += other.simulations_rto_passed;
+        simulations_rpo_passed += other.simulations_rpo_passed;
+        weighted |= other.weighted;
+        weight_sum += other.weight_sum;
+        weight_sum_of_squares += other.weight_sum_of_squares;
+        rto_failed_weight += other.rto_failed_weight;
+        rto_failed_weight_squared += other.rto_failed_weight_squared;
+        rpo_failed_weight += other.rpo_failed_weight;
+        rpo_failed_weight_squared += other.rpo_failed_weight_squared;
+    }
+
+    private void record_days_compromised(int days_compromised) {
+        if (this.rto > days_compromised) {
+            ++simulations_rto_passed;
+        }
+        if (keep_results) {
+            total_days_compromised.add(days_compromised);
+        }
+        days_compromised_histogram.add(days_compromised);
+    }
+
+    private void record_first_day_compromised(int day) {
+        if (keep_results) {
+            first_day_compromised.add(day);
+        }
+        first_day_compromised_histogram.add(day);
+    }
+
+    private void record_times_compromised(int number_of_times_compromised) {
+        if (keep_results) {
+            times_compromised.add(number_of_times_compromised);
+        }
+        times_compromised_histogram.add(number_of_times_compromised);
+    }
+
+    private void record_days_data_lost(int total_days_of_data_lost) {
+        if (keep_results) {
+            days_data_lost.add(total_days_of_data_lost);
+        }
+        days_data_lost_histogram.add(total_days_of_data_lost);
+        if (rpo > total_days_of_data_lost) {
+            ++simulations_rpo_passed;
+        }
+    }
+
+    public int get_simulations() {
+        return (int) days_compromised_histogram.count();
     }
 
     public int get_simulations_rto_passed() {
@@ -70,16 +225,172 @@ public class SimulationBlockSummary {
         return simulations_rpo_passed;
     }
 
-    public List<Integer> get_days_compromised() {
-        return this.total_days_compromised;
+    // Passes for any other threshold, read from the histograms, a simulation passes an RTO of 'rto' if the block
+    // was compromised for fewer than 'rto' days. These are counts of the simulations as run, so not reweighted
+    // when is_weighted()
+    public long get_simulations_rto_passed(int rto) {
+        return days_compromised_histogram.count_below(rto);
+    }
+
+    public long get_simulations_rpo_passed(int rpo) {
+        return days_data_lost_histogram.count_below(rpo);
+    }
+
+    public boolean is_weighted() {
+        return weighted;
     }
 
-    public List<Integer> get_first_day_compromised() {
-        return this.first_day_compromised;
+    // The exact engine's metrics are a quantile sample of the exact distributions, so the pass counts are rounded
+    // to multiples of 1 / simulations. These are the exact probabilities reported instead
+    public void set_exact_pass_rates(double rto_pass_rate, double rpo_pass_rate) {
+        this.exact_rto_pass_rate = rto_pass_rate;
+        this.exact_rpo_pass_rate = rpo_pass_rate;
     }
 
-    public List<Integer> get_days_data_lost() {
-        return this.days_data_lost;
+    public boolean is_exact() {
+        return !Double.isNaN(exact_rto_pass_rate);
+    }
+
+    // Fraction of the simulations that passed, for importance sampling the unbiased estimate
+    // 1 - (sum of the weights of failed simulations) / simulations, which is only close to 1 if the weights are good
+    public double get_rto_pass_rate() {
+        if (is_exact()) {
+            return exact_rto_pass_rate;
+        }
+        if (weighted) {
+            return 1.0 - rto_failed_weight / get_simulations();
+        }
+        return (double) simulations_rto_passed / get_simulations();
+    }
+
+    public double get_rpo_pass_rate() {
+        if (is_exact()) {
+            return exact_rpo_pass_rate;
+        }
+        if (weighted) {
+            return 1.0 - rpo_failed_weight / get_simulations();
+        }
+        return (double) simulations_rpo_passed / get_simulations();
+    }
+
+    // How many plain simulations the weighted ones are worth, (sum of weights)^2 / sum of squared weights
+    // Far below get_simulations() means a few simulations dominate and the tilt is too strong
+    public double get_effective_simulations() {
+        if (weighted) {
+            return weight_sum_of_squares == 0.0 ? 0.0 : weight_sum * weight_sum / weight_sum_of_squares;
+        }
+        return get_simulations();
+    }
+
+    // Half-widths of the 95% confidence intervals, used by the sequential mode to know when to stop
+    // Pass rates use the Agresti-Coull interval, which unlike the usual p +/- z * sqrt(p * (1 - p) / n)
+    // isn't 0 when no simulation (or every simulation) passed
+    // Importance sampled pass rates use the normal interval of the mean weighted failure
+    // Exact results have no sampling error, so their half-widths are 0
+    public double get_rto_passed_half_width() {
+        if (is_exact()) {
+            return 0.0;
+        }
+        if (weighted) {
+            return weighted_half_width(rto_failed_weight, rto_failed_weight_squared);
+        }
+        return pass_rate_half_width(simulations_rto_passed);
+    }
+
+    public double get_rpo_passed_half_width() {
+        if (is_exact()) {
+            return 0.0;
+        }
+        if (weighted) {
+            return weighted_half_width(rpo_failed_weight, rpo_failed_weight_squared);
+        }
+        return pass_rate_half_width(simulations_rpo_passed);
+    }
+
+    // In days, infinite until there are two simulations
+    public double get_days_compromised_half_width() {
+        if (is_exact()) {
+            return 0.0;
+        }
+        long n = days_compromised_histogram.count();
+        if (n < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Z_95 * Math.sqrt(days_compromised_histogram.variance() / n);
+    }
+
+    private double pass_rate_half_width(int passed) {
+        return get_pass_rate_half_width(passed, get_simulations());
+    }
+
+    // Agresti-Coull half-width of 'passed' out of 'simulations'
+    public static double get_pass_rate_half_width(long passed, long simulations) {
+        double n = simulations + Z_95 * Z_95;
+        double rate = (passed + Z_95 * Z_95 / 2) / n;
+        return Z_95 * Math.sqrt(rate * (1 - rate) / n);
+    }
+
+    private double weighted_half_width(double failed_weight, double failed_weight_squared) {
+        long n = get_simulations();
+        if (n < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double mean = failed_weight / n;
+        double variance = Math.max(0.0, (failed_weight_squared - n * mean * mean) / (n - 1));
+        return Z_95 * Math.sqrt(variance / n);
+    }
+
+    // Copies of the per-simulation values, in simulation order, empty unless keep_results
+    public int[] get_days_compromised() {
+        return this.total_days_compromised.to_array();
+    }
+
+    public int[] get_first_day_compromised() {
+        return this.first_day_compromised.to_array();
+    }
+
+    public int[] get_times_compromised() {
+        return this.times_compromised.to_array();
+    }
+
+    public int[] get_days_data_lost() {
+        return this.days_data_lost.to_array();
+    }
+
+    public IntHistogram get_days_compromised_histogram() {
+        return this.days_compromised_histogram;
+    }
+
+    public IntHistogram get_first_day_compromised_histogram() {
+        return this.first_day_compromised_histogram;
+    }
+
+    public IntHistogram get_times_compromised_histogram() {
+        return this.times_compromised_histogram;
+    }
+
+    public IntHistogram get_days_data_lost_histogram() {
+        return this.days_data_lost_histogram;
+    }
+
+    public double get_min() {
+        return min;
+    }
+
+    public double get_q1() {
+        return q1;
+    }
+
+    public double get_median() {
+        return q2;
+    }
+
+    public double get_q3() {
+        return q3;
+    }
+
+    public double get_max() {
+        return max;
     }
 
     public String toString() {
@@ -106,6 +417,10 @@ public class SimulationBlockSummary {
                 : "Sizes of days_compromised, first_day_compromised, and times_compromised do not match";
 
         Sheet sheet = workbook.createSheet(block_name);
+        if (!keep_results) {
+            toExcelStatistics(sheet);
+            return;
+        }
 
         // Create the header row
         Row headerRow = sheet.createRow(0);
@@ -162,13 +477,37 @@ public class SimulationBlockSummary {
         }
     }
 
-    // Note to avoid issues with '-1' from days compromised if it never occurred, just remove it
-    public void compute_summary(List<Integer> results) {
-        results.removeIf(n -> n < 0);
-        Collections.sort(results);
-        average = computeAverage(results);
+    // Without the per-simulation rows, write the five-number summary and mean of each metric instead
+    private void toExcelStatistics(Sheet sheet) {
+        Row headerRow = sheet.createRow(0);
+        String[] columns = { "Metric", "Simulations", "Min", "Q1", "Median", "Q3", "Max", "Average" };
+        for (int i = 0; i < columns.length; i++) {
+            headerRow.createCell(i).setCellValue(columns[i]);
+        }
 
-        if (results.isEmpty()) {
+        String[] metrics = { "First Day Compromised", "Days Compromised (RTO)", "Times Compromised", "Total Days of Data Lost (RPO)" };
+        IntHistogram[] histograms = { first_day_compromised_histogram, days_compromised_histogram,
+                times_compromised_histogram, days_data_lost_histogram };
+        for (int i = 0; i < metrics.length; i++) {
+            compute_summary(histograms[i]);
+            Row row = sheet.createRow(i + 1);
+            row.createCell(0).setCellValue(metrics[i]);
+            row.createCell(1).setCellValue(histograms[i].count());
+            row.createCell(2).setCellValue(min);
+            row.createCell(3).setCellValue(q1);
+            row.createCell(4).setCellValue(q2);
+            row.createCell(5).setCellValue(q3);
+            row.createCell(6).setCellValue(max);
+            row.createCell(7).setCellValue(average);
+        }
+    }
+
+    // Same statistics as compute_summary(List), read straight from the histogram, '-1' entries are never in it
+    public void compute_summary(IntHistogram results) {
+        long n = results.count();
+        average = Math.round(results.mean() * 100.0) / 100.0;
+
+        if (n == 0) {
             min = 0;
             q1 = 0;
             q2 = 0;
@@ -176,21 +515,30 @@ public class SimulationBlockSummary {
             max = 0;
             return;
         }
-        else if (results.size() == 1) {
-            min = results.get(0);
-            q1 = results.get(0);
-            q2 = results.get(0);
-            q3 = results.get(0);
-            max = results.get(0);
-            return;
+
+        min = results.min();
+        q1 = n == 1 ? min : results.median(0, n / 2);
+        q2 = results.median(0, n);
+        q3 = n == 1 ? min : results.median((n + 1) / 2, n);
+        max = results.max();
+    }
+
+    // Same as compute_summary(IntHistogram), '-1' entries (never compromised) are left out
+    // Counts the values instead of sorting them, and leaves 'results' as it was
+    public void compute_summary(List<Integer> results) {
+        IntHistogram histogram = new IntHistogram();
+        for (int result : results) {
+            histogram.add(result);
         }
+        compute_summary(histogram);
+    }
 
-        int n = results.size();
-        min = results.get(0);
-        q1 = median(results, 0, n / 2);
-        q2 = median(results, 0, n);
-        q3 = median(results, (n + 1) / 2, n);
-        max = results.get(n - 1);
+    public void compute_summary(int[] results) {
+        IntHistogram histogram = new IntHistogram();
+        for (int result : results) {
+            histogram.add(result);
+        }
+        compute_summary(histogram);
     }
 
     public static double computeAverage(List<Integer> list) {
@@ -210,29 +558,19 @@ public class SimulationBlockSummary {
         return Math.round(average * 100.0) / 100.0;
     }
 
-    private static double median(List<Integer> sortedList, int start, int end) {
-        int length = end - start;
-        if (length % 2 == 0) {
-            return (sortedList.get(start + length / 2 - 1) + sortedList.get(start + length / 2)) / 2.0;
-        }
-        else {
-            return sortedList.get(start + length / 2);
-        }
-    }
-
     public void first_day_compromised(List<Boolean> is_compromised) {
         int day = 0;
 
         // Check the first day it was compromised
         for (Boolean status : is_compromised) {
             if (status) {
-                first_day_compromised.add(day);
+                record_first_day_compromised(day);
                 return;
             }
             ++day;
         }
         // It was never compromised! Yay!
-        first_day_compromised.add(-1);
+        record_first_day_compromised(-1);
     }
 
     public void days_compromised(List<Boolean> is_compromised) {
@@ -244,10 +582,7 @@ public class SimulationBlockSummary {
                 ++days_compromised;
             }
         }
-        if (this.rto > days_compromised) {
-            ++simulations_rto_passed;
-        }
-        total_days_compromised.add(days_compromised);
+        record_days_compromised(days_compromised);
     }
 
     public void times_compromised(List<Boolean> is_compromised) {
@@ -267,7 +602,7 @@ public class SimulationBlockSummary {
         }
 
         // Place results
-        times_compromised.add(number_of_times_compromised);
+        record_times_compromised(number_of_times_compromised);
     }
 
     // Note, we treat groups of cyber_state=True as part of one down-time
@@ -299,9 +634,43 @@ public class SimulationBlockSummary {
         }
 
         // Place results
-        days_data_lost.add(total_days_of_data_lost);
-        if (rpo > total_days_of_data_lost) {
-            ++simulations_rpo_passed;
+        record_days_data_lost(total_days_of_data_lost);
+    }
+
+    // Growable int array, so the per-simulation values aren't boxed
+    private static class IntColumn {
+
+        private int[] values = new int[16];
+        private int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void add_all(IntColumn other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+
+        int get(int index) {
+            if (index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of " + size);
+            }
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] to_array() {
+            return Arrays.copyOf(values, size);
         }
     }
 }
@@ -40,68 +40,134 @@ import java.util.*;
 
 // I want this class to track general results of an entire simulation
 // This will be exported to one worksheet on Simulation workbook
+// Stored by column: one bit-packed BitTimeline per block and int[] series for the daily counts,
+// the List getters below are read-only views over that storage
 public class SimulationOverallSummary {
 
-    private final List<Integer> total_compromised_blocks = new ArrayList<>();
-    private final List<Integer> total_in_scope_blocks = new ArrayList<>();
+    private int[] total_compromised_blocks;
+    private int compromised_days = 0;
+    private int[] total_in_scope_blocks;
+    private int in_scope_days = 0;
     // Header will be block name, status will be the column
-    private final HashMap<String, List<Boolean>> block_and_cyber_states = new HashMap<>();
+    private final LinkedHashMap<String, Integer> block_columns = new LinkedHashMap<>();
+    private final List<BitTimeline> block_and_cyber_states = new ArrayList<>();
+    private final int expected_days;
 
-    public void addStatus(String block_name, Boolean compromised) {
-        List<Boolean> status = block_and_cyber_states.get(block_name);
-        if (status == null) {
-            status = new ArrayList<>();
+    public SimulationOverallSummary() {
+        this(64);
+    }
+
+    // Pre-size every series for the number of days simulated
+    public SimulationOverallSummary(int expected_days) {
+        this.expected_days = Math.max(1, expected_days);
+        this.total_compromised_blocks = new int[this.expected_days];
+        this.total_in_scope_blocks = new int[this.expected_days];
+    }
+
+    // Register a block and get its column, so the simulation can append without looking the name up every day
+    public int add_block(String block_name) {
+        Integer block_column = block_columns.get(block_name);
+        if (block_column == null) {
+            block_column = block_and_cyber_states.size();
+            block_columns.put(block_name, block_column);
+            block_and_cyber_states.add(new BitTimeline(expected_days));
         }
-        status.add(compromised);
-        block_and_cyber_states.put(block_name, status);
+        return block_column;
+    }
+
+    public void addStatus(int block_column, boolean compromised) {
+        block_and_cyber_states.get(block_column).add(compromised);
+    }
+
+    public void addStatus(String block_name, Boolean compromised) {
+        addStatus(add_block(block_name), compromised);
     }
 
     public List<Boolean> get_block_status(String block_name) {
-        return block_and_cyber_states.get(block_name);
+        BitTimeline status = get_block_timeline(block_name);
+        return status == null ? null : status.asList();
+    }
+
+    public BitTimeline get_block_timeline(String block_name) {
+        Integer block_column = block_columns.get(block_name);
+        return block_column == null ? null : block_and_cyber_states.get(block_column);
     }
 
     public void add_number_compromised_blocks(int compromised_blocks) {
-        total_compromised_blocks.add(compromised_blocks);
+        if (compromised_days == total_compromised_blocks.length) {
+            total_compromised_blocks = Arrays.copyOf(total_compromised_blocks, compromised_days * 2);
+        }
+        total_compromised_blocks[compromised_days++] = compromised_blocks;
     }
 
     public void add_in_scope_blocks(int in_scope_blocks) {
-        total_in_scope_blocks.add(in_scope_blocks);
+        if (in_scope_days == total_in_scope_blocks.length) {
+            total_in_scope_blocks = Arrays.copyOf(total_in_scope_blocks, in_scope_days * 2);
+        }
+        total_in_scope_blocks[in_scope_days++] = in_scope_blocks;
     }
 
     public Set<String> getAllBlocks() {
-        return this.block_and_cyber_states.keySet();
+        return this.block_columns.keySet();
     }
 
     public List<Integer> getTotal_compromised_blocks() {
-        return this.total_compromised_blocks;
+        return intView(total_compromised_blocks, compromised_days);
     }
 
     public List<Integer> getTotal_in_scope_blocks() {
-        return this.total_in_scope_blocks;
+        return intView(total_in_scope_blocks, in_scope_days);
+    }
+
+    public int get_days() {
+        return compromised_days;
+    }
+
+    public int get_compromised_blocks(int day) {
+        return total_compromised_blocks[day];
+    }
+
+    public int get_in_scope_blocks(int day) {
+        return total_in_scope_blocks[day];
+    }
+
+    private static List<Integer> intView(int[] values, int size) {
+        return new AbstractList<>() {
+            @Override
+            public Integer get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException("Index " + index + " out of " + size);
+                }
+                return values[index];
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
     }
 
     public String toString() {
-        assert total_compromised_blocks.size() == total_in_scope_blocks.size()
-                && total_compromised_blocks.size() == block_and_cyber_states.size()
-                : "Sizes of total_compromised_blocks, total_in_scope_blocks, and block_and_cyber_states do not match";
+        assert compromised_days == in_scope_days
+                : "Sizes of total_compromised_blocks and total_in_scope_blocks do not match";
 
         StringBuilder output;
 
         // write the header
         output = new StringBuilder("Day,Compromised Blocks,In Scope Blocks");
-        for (String block_name : block_and_cyber_states.keySet()) {
+        for (String block_name : block_columns.keySet()) {
             output.append(",").append(block_name);
         }
         output.append('\n');
 
         // write each row now
-        for (int day = 0; day < total_compromised_blocks.size(); day++) {
+        for (int day = 0; day < compromised_days; day++) {
             output.append(day).append(",");
-            output.append(total_compromised_blocks.get(day)).append(",");
-            output.append(total_in_scope_blocks.get(day)).append(",");
+            output.append(total_compromised_blocks[day]).append(",");
+            output.append(total_in_scope_blocks[day]).append(",");
 
-            for (String block_name : block_and_cyber_states.keySet()) {
-                List<Boolean> status = block_and_cyber_states.get(block_name);
+            for (BitTimeline status : block_and_cyber_states) {
                 output.append(status.get(day)).append(",");
             }
             output.setLength(output.length() - 1); // Remove the trailing comma
@@ -111,9 +177,8 @@ public class SimulationOverallSummary {
     }
 
     public void toExcelSheet(Workbook workbook, int simulation) {
-        assert total_compromised_blocks.size() == total_in_scope_blocks.size()
-                && total_compromised_blocks.size() == block_and_cyber_states.size()
-                : "Sizes of total_compromised_blocks, total_in_scope_blocks, and block_and_cyber_states do not match";
+        assert compromised_days == in_scope_days
+                : "Sizes of total_compromised_blocks and total_in_scope_blocks do not match";
 
         Sheet sheet = workbook.createSheet("Simulation " + simulation + " Summary");
 
@@ -123,20 +188,19 @@ public class SimulationOverallSummary {
         headerRow.createCell(cellIndex++).setCellValue("Day");
         headerRow.createCell(cellIndex++).setCellValue("Compromised Blocks");
         headerRow.createCell(cellIndex++).setCellValue("In Scope Blocks");
-        for (String block_name : block_and_cyber_states.keySet()) {
+        for (String block_name : block_columns.keySet()) {
             headerRow.createCell(cellIndex++).setCellValue(block_name);
         }
 
         // Write each row
-        for (int day = 0; day < total_compromised_blocks.size(); day++) {
+        for (int day = 0; day < compromised_days; day++) {
             Row row = sheet.createRow(day + 1);
             cellIndex = 0;
             row.createCell(cellIndex++).setCellValue(day);
-            row.createCell(cellIndex++).setCellValue(total_compromised_blocks.get(day));
-            row.createCell(cellIndex++).setCellValue(total_in_scope_blocks.get(day));
+            row.createCell(cellIndex++).setCellValue(total_compromised_blocks[day]);
+            row.createCell(cellIndex++).setCellValue(total_in_scope_blocks[day]);
 
-            for (String block_name : block_and_cyber_states.keySet()) {
-                List<Boolean> status = block_and_cyber_states.get(block_name);
+            for (BitTimeline status : block_and_cyber_states) {
                 row.createCell(cellIndex++).setCellValue(status.get(day));
             }
         }
@@ -153,9 +217,9 @@ public class SimulationOverallSummary {
         // Read the header row
         Row headerRow = sheet.getRow(0);
         int cellIndex = 3; // Start after "Day", "Compromised Blocks", "In Scope Blocks"
-        List<String> block_names = new ArrayList<>();
+        List<Integer> block_columns = new ArrayList<>();
         while (cellIndex < headerRow.getLastCellNum()) {
-            block_names.add(headerRow.getCell(cellIndex++).getStringCellValue());
+            block_columns.add(summary.add_block(headerRow.getCell(cellIndex++).getStringCellValue()));
         }
 
         // Read each row
@@ -172,9 +236,9 @@ public class SimulationOverallSummary {
             summary.add_in_scope_blocks(inScopeBlocks);
 
             cellIndex = 3;
-            for (String blockName : block_names) {
+            for (int block_column : block_columns) {
                 boolean status = row.getCell(cellIndex++).getBooleanCellValue();
-                summary.addStatus(blockName, status);
+                summary.addStatus(block_column, status);
             }
         }
         return summary;
@@ -0,0 +1,52 @@
+// ------------------------------------------------------------------------------
+// --  ______  __________
+// --  \    / /_____    /
+// --   |  | /      |  |
+// --   |  |   --   |  |
+// --   |  |  |\/|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |  |/\|  |  |
+// --   |  |   --   |  |
+// --   |  |_____ / |  |
+// --  /_________/ /____\
+// ------------------------------------------------------------------------------
+/*
+ * DISTRIBUTION STATEMENT A. Approved for public release. Distribution is unlimited.
+ * This material is based upon work supported by the Dept of the Navy under Air
+ * Force Contract No. FA8702-15-D-0001 or FA8702-25-D-B002.
+ * Any opinions, findings, conclusions or recommendations expressed in this material
+ * are those of the author(s) and do not necessarily reflect the views of the Dept
+ * of the Navy.
+ * (c) 2024 Massachusetts Institute of Technology.
+ * The software/firmware is provided to you on an As-Is basis.
+ * Delivered to the U.S. Government with Unlimited Rights, as defined in DFARS Part
+ * 252.227-7013 or 7014 (Feb 2014).
+ * Notwithstanding any copyright notice, U.S. Government rights in this work are
+ * defined by DFARS 252.227-7013 or DFARS 252.227-7014 as detailed above.
+ * Use of this work other than as specifically authorized by the U.S. Government may
+ * violate any copyrights that exist in this work.
+ */
+
+package edu.mit.ll.simulation_results;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.WorkbookUtil;
+
+// Excel sheet names are at most 31 characters and unique ignoring case, so names of blocks or files that only
+// differ after 31 characters, or in their directory, would make createSheet() throw
+public class WorkbookSheets {
+
+    private static final int MAX_SHEET_NAME_LENGTH = 31;
+
+    // Creates a sheet named after 'name', with " (2)", " (3)", ... added if that sheet already exists
+    public static Sheet create_unique_sheet(Workbook workbook, String name) {
+        String sheet_name = WorkbookUtil.createSafeSheetName(name);
+        for (int copy = 2; workbook.getSheet(sheet_name) != null; copy++) {
+            String suffix = " (" + copy + ")";
+            String base = WorkbookUtil.createSafeSheetName(name);
+            sheet_name = base.substring(0, Math.min(base.length(), MAX_SHEET_NAME_LENGTH - suffix.length())) + suffix;
+        }
+        return workbook.createSheet(sheet_name);
+    }
+}
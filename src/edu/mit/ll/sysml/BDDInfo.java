@@ -35,6 +35,7 @@ import com.nomagic.magicdraw.uml.symbols.shapes.ClassView;
 import com.nomagic.uml2.ext.jmi.helpers.ModelHelper;
 import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Class;
 import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.*;
+import edu.mit.ll.simulation.BlockGraph;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -146,6 +147,34 @@ public class BDDInfo {
         return children;
     }
 
+    // Walk the associations once and freeze the result, so the simulation never touches the model again.
+    // Neighbors that are not part of 'blocks' are dropped, they can never be compromised anyway.
+    public static BlockGraph createBlockGraph(Collection<Class> blocks, Collection<Class> starting_blocks,
+                                              Map<String, Double> threat_likelihood_by_block) {
+        BlockGraph.Builder builder = new BlockGraph.Builder();
+        for (Class block : blocks) {
+            builder.add_block(block.getName(), threat_likelihood_by_block.getOrDefault(block.getName(), 0.0));
+        }
+
+        for (Class block : blocks) {
+            int from = builder.get_block_id(block.getName());
+            for (Class child : searchConnectedBlocks(block)) {
+                int to = builder.get_block_id(child.getName());
+                if (to != -1) {
+                    builder.add_edge(from, to);
+                }
+            }
+        }
+
+        for (Class block : starting_blocks) {
+            int start = builder.get_block_id(block.getName());
+            if (start != -1) {
+                builder.add_starting_block(start);
+            }
+        }
+        return builder.build();
+    }
+
     private static boolean validAssoc(Element[] ends, NamedElement[] endTypes) {
         if(ends[0] == null || ends[1] == null) {
             return false;
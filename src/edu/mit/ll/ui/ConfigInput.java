@@ -127,18 +127,24 @@ public class ConfigInput extends JDialog {
                 JTextField textField = (JTextField) panel.getComponent(1);
 
                 String key = label.getText();
-                String value = textField.getText().toLowerCase();
+                // Only the named options are case-insensitive, compare_weights paths and the sweep are kept as typed
+                String value = textField.getText();
 
                 switch (key) {
-                    case "uniform_size", "days", "simulations", "backup_frequency", "rto", "rpo" -> {
+                    case "uniform_size", "days", "simulations", "backup_frequency", "rto", "rpo", "max_backup_frequency" -> {
                         Integer intValue = Integer.parseInt(value);
                         config.put(key, intValue);
                     }
-                    case "threat_likelihood", "patch_likelihood" -> {
+                    case "threat_likelihood", "patch_likelihood", "precision", "importance_tilt" -> {
                         Double doubleValue = Double.valueOf(value);
                         config.put(key, doubleValue);
                     }
-                    case "populate_blocks" -> config.put(key, Boolean.parseBoolean(value));
+                    case "seed" -> {
+                        Long longValue = Long.parseLong(value);
+                        config.put(key, longValue);
+                    }
+                    case "populate_blocks", "parallel", "summary_only", "pre_screen", "incremental" -> config.put(key, Boolean.parseBoolean(value));
+                    case "distribution", "engine" -> config.put(key, value.toLowerCase());
                     default -> config.put(key, value);
                 }
             }
@@ -248,10 +254,10 @@ public class ConfigInput extends JDialog {
             JTextField textField = (JTextField) panel.getComponent(1);
             String key = key_label.getText();
             // Careful you need to make the parseInt/parseDouble here too
-            String value = textField.getText().toLowerCase();
+            String value = textField.getText();
 
             switch (key) {
-                case "uniform_size", "days", "simulations", "backup_frequency", "rto", "rpo" -> {
+                case "uniform_size", "days", "simulations", "backup_frequency", "rto", "rpo", "max_backup_frequency" -> {
                     try {
                         Integer intValue = Integer.parseInt(value);
                         // I need to confirm this value is OK for the config, recycle method in Input Validation
@@ -267,7 +273,7 @@ public class ConfigInput extends JDialog {
                         textField.setBackground(invalidColor);
                     }
                 }
-                case "threat_likelihood", "patch_likelihood" -> {
+                case "threat_likelihood", "patch_likelihood", "precision", "importance_tilt" -> {
                     // I need to confirm this value is OK for the config, recycle method in Input Validation
                     try {
                         Double doubleValue = Double.valueOf(value);
@@ -283,7 +289,22 @@ public class ConfigInput extends JDialog {
                         textField.setBackground(invalidColor);
                     }
                 }
-                case "populate_blocks" -> {
+                case "seed" -> {
+                    try {
+                        Long longValue = Long.parseLong(value);
+                        if (check_config_key(key, longValue)) {
+                            textField.setBackground(validColor);
+                        } else {
+                            ok_slots = false;
+                            textField.setBackground(invalidColor);
+                        }
+                    } catch (NumberFormatException e) {
+                        JOptionPane.showMessageDialog(null, "Config: REAP expects a whole number for the " + key + " key");
+                        ok_slots = false;
+                        textField.setBackground(invalidColor);
+                    }
+                }
+                case "populate_blocks", "parallel", "summary_only", "pre_screen", "incremental" -> {
                     if (value.equalsIgnoreCase("true")) {
                         Boolean boolValue = Boolean.parseBoolean(value);
                         if (check_config_key(key, boolValue)) {
@@ -306,6 +327,14 @@ public class ConfigInput extends JDialog {
                         textField.setBackground(invalidColor);
                     }
                 }
+                case "distribution", "engine" -> {
+                    if (check_config_key(key, value.toLowerCase())) {
+                        textField.setBackground(validColor);
+                    } else {
+                        ok_slots = false;
+                        textField.setBackground(invalidColor);
+                    }
+                }
                 default -> {
                     // I need to confirm this value is OK for the config, recycle method in Input Validation
                     if (check_config_key(key, value)) {